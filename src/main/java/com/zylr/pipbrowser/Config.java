@@ -1,18 +1,50 @@
 package com.zylr.pipbrowser;
 
 
-import com.zylr.pipbrowser.properties.MainProperties;
+import com.zylr.pipbrowser.properties.ConfigFile;
+import com.zylr.pipbrowser.properties.ConfigStore;
 
 import java.util.Properties;
 
+// Typed access to the main config; values come from the in-memory snapshot, never from disk
 public class Config {
     public static double getScale() {
-        Properties p = MainProperties.getConfig();
-        return Double.parseDouble(p.getProperty("scale", "0.5"));
+        return ConfigStore.main().getDouble("scale", 0.5);
+    }
+    // Hide and throttle browser tabs that are neither shown nor on the HUD
+    public static boolean shouldSuspendBackgroundTabs() {
+        return ConfigStore.main().getBoolean("suspendBackgroundTabs", true);
+    }
+    // Also suspend background tabs that are playing audio
+    public static boolean shouldSuspendPlayingTabs() {
+        return ConfigStore.main().getBoolean("suspendPlayingTabs", false);
+    }
+    // Tabs beyond this many live browsers are discarded, least recently used first (0 = no limit)
+    public static int getMaxLiveBrowsers() {
+        return ConfigStore.main().getInt("maxLiveBrowsers", 4);
+    }
+    public static boolean shouldDiscardHudTab() {
+        return ConfigStore.main().getBoolean("discardHudTab", false);
+    }
+    public static boolean shouldDiscardPlayingTabs() {
+        return ConfigStore.main().getBoolean("discardPlayingTabs", false);
+    }
+    // Draw HUD browsers through a cached offscreen composite instead of one quad each per frame
+    public static boolean isHudCompositeEnabled() {
+        return ConfigStore.main().getBoolean("hudComposite", true);
+    }
+    // Hidden browsers kept ready for new tabs at most, the pool follows how often tabs are opened (0 = off)
+    public static int getBrowserPoolSize() {
+        return ConfigStore.main().getInt("browserPoolSize", 2);
+    }
+    // Metered or slow connection: never load pages the player has not opened yet
+    public static boolean isDataSaverEnabled() {
+        return ConfigStore.main().getBoolean("dataSaver", false);
     }
     public static void setScale(double value) {
-        Properties p = MainProperties.getConfig();
+        ConfigFile file = ConfigStore.main();
+        Properties p = file.copy();
         p.setProperty("scale", String.valueOf(value));
-        MainProperties.saveConfig(p);
+        file.save(p);
     }
 }
@@ -2,7 +2,6 @@ package com.zylr.pipbrowser;
 
 import net.fabricmc.fabric.api.client.keybinding.v1.KeyBindingHelper;
 import net.minecraft.client.KeyMapping;
-import net.minecraft.client.input.KeyEvent;
 import com.mojang.blaze3d.platform.InputConstants;
 import net.minecraft.resources.ResourceLocation;
 import org.lwjgl.glfw.GLFW;
@@ -42,8 +41,12 @@ public class Controls {
 
     // Compatibility helper: check if a KeyMapping matches a key event
     public static boolean matchesKey(KeyMapping km, int keyCode, int scanCode) {
-        // In 1.21.10, KeyMapping.matches() takes a KeyEvent parameter
-        KeyEvent keyEvent = new KeyEvent(keyCode, scanCode, 1);
-        return km.matches(keyEvent);
+        // Compare against the bound key directly instead of building a KeyEvent for KeyMapping.matches()
+        InputConstants.Key key = KeyBindingHelper.getBoundKeyOf(km);
+        // Like KeyMapping.matches: the scancode only counts for keys without a key code
+        if (keyCode == InputConstants.UNKNOWN.getValue()) {
+            return key.getType() == InputConstants.Type.SCANCODE && key.getValue() == scanCode;
+        }
+        return key.getType() == InputConstants.Type.KEYSYM && key.getValue() == keyCode;
     }
 }
@@ -1,13 +1,13 @@
 package com.zylr.pipbrowser;
 
 import com.zylr.pipbrowser.hud.MainHud;
+import com.zylr.pipbrowser.properties.ConfigStore;
 import com.zylr.pipbrowser.properties.MainProperties;
 import net.fabricmc.api.ModInitializer;
 import org.slf4j.Logger;
 import com.mojang.logging.LogUtils;
 
-import java.io.*;
-import java.util.Properties;
+import java.io.File;
 
 public class PIPBrowser implements ModInitializer {
     // Define mod id in a common place for everything to reference
@@ -36,31 +36,13 @@ public class PIPBrowser implements ModInitializer {
         // Verify directories
         File propDirectory = new File(MainProperties.PROPDIR);
         File widgetDir = new File("browser/properties/widgets");
-        // Primary config
-        File mainConfigPath = new File(MainProperties.PATH);
-
-        // Configs
-        Properties mainConfig = new Properties();
-        try {
-            // Check if directories exist
-            if (!propDirectory.exists())
-                propDirectory.mkdirs();
-            if (!widgetDir.exists())
-                widgetDir.mkdirs();
-            // Check if config files exist
-            if (!mainConfigPath.exists()) {
-                mainConfigPath.createNewFile();
-                // Load defaults for config files
-                InputStream mainConfigInput = this.getClass().getClassLoader().getResourceAsStream("configs/mainconfig.properties");
-                mainConfig.load(mainConfigInput);
-                // Save default config files
-                OutputStream mainConfigOutput = new FileOutputStream(MainProperties.PATH);
-                mainConfig.store(mainConfigOutput, null);
-                LOGGER.info("Created default config file at " + MainProperties.PATH);
-            }
-        }catch (IOException ex) {
-            ex.printStackTrace();
-        }
+        if (!propDirectory.exists())
+            propDirectory.mkdirs();
+        if (!widgetDir.exists())
+            widgetDir.mkdirs();
+        // Parse the primary config once (writing the defaults if it is missing) and follow edits on disk
+        Config.getScale();
+        ConfigStore.startWatching();
     }
 
 
@@ -4,9 +4,16 @@ import com.zylr.pipbrowser.listeners.ClientPlayerNetworkListener;
 import com.zylr.pipbrowser.listeners.InputListener;
 import com.zylr.pipbrowser.listeners.LinkScreenListener;
 import com.zylr.pipbrowser.listeners.RenderHudElements;
+import com.zylr.pipbrowser.browser.BrowserManager;
+import com.zylr.pipbrowser.properties.ConfigWriter;
+import com.zylr.pipbrowser.render.HudCompositeRenderer;
+import com.zylr.pipbrowser.screens.BrowserScreen;
+import com.cinemamod.mcef.MCEF;
 import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
 import net.fabricmc.fabric.api.client.rendering.v1.HudRenderCallback;
+import net.fabricmc.fabric.api.client.rendering.v1.SpecialGuiElementRegistry;
 import net.minecraft.client.Minecraft;
 
 public class PIPBrowserClient implements ClientModInitializer {
@@ -21,6 +28,7 @@ public class PIPBrowserClient implements ClientModInitializer {
 
         RenderHudElements renderHudElements = new RenderHudElements();
         HudRenderCallback.EVENT.register(renderHudElements::onRenderHud);
+        SpecialGuiElementRegistry.register(context -> new HudCompositeRenderer(context.vertexConsumers()));
 
         // Register network listener
         ClientPlayerNetworkListener.register();
@@ -30,5 +38,28 @@ public class PIPBrowserClient implements ClientModInitializer {
 
         // Register key bindings
         Controls.register();
+
+        // Create and close browsers outside of frames, a few per tick
+        ClientTickEvents.END_CLIENT_TICK.register(client -> BrowserManager.tick());
+
+        // Bring back the HUD tab of the last session once a world is loaded and MCEF is up
+        ClientTickEvents.END_CLIENT_TICK.register(client -> {
+            if (client.level != null && MCEF.isInitialized()) {
+                BrowserScreen.restoreSession();
+            }
+        });
+
+        // Config saves are written in the background, make sure the last ones land
+        ClientLifecycleEvents.CLIENT_STOPPING.register(client -> {
+            // Snapshots ask the live browsers for their state, which only works while CEF is still up
+            if (MCEF.isInitialized()) {
+                try {
+                    BrowserScreen.saveSession();
+                } catch (Exception e) {
+                    PIPBrowser.LOGGER.warn("Could not save the browser session: {}", e.getMessage());
+                }
+            }
+            ConfigWriter.flush();
+        });
     }
 }
@@ -0,0 +1,85 @@
+package com.zylr.pipbrowser.browser;
+
+import com.cinemamod.mcef.MCEF;
+import com.cinemamod.mcef.MCEFClient;
+import com.zylr.pipbrowser.PIPBrowser;
+import org.cef.CefSettings;
+import org.cef.browser.CefBrowser;
+import org.cef.browser.CefFrame;
+import org.cef.handler.CefDisplayHandlerAdapter;
+import org.cef.handler.CefLoadHandlerAdapter;
+
+/**
+ * Routes CEF client callbacks to our {@link ManagedBrowser}s. Pages report
+ * state back to us by logging console messages that start with
+ * {@link #MESSAGE_PREFIX}; those are consumed here and never reach the log.
+ */
+public class BrowserEvents {
+    public static final String MESSAGE_PREFIX = "__pipbrowser:";
+
+    private static boolean registered = false;
+
+    /**
+     * Register the handlers on the shared MCEF client. Safe to call more than once.
+     */
+    public static void register() {
+        if (registered) {
+            return;
+        }
+        try {
+            MCEFClient client = MCEF.getClient();
+            client.addDisplayHandler(new CefDisplayHandlerAdapter() {
+                @Override
+                public boolean onConsoleMessage(CefBrowser browser, CefSettings.LogSeverity level, String message, String source, int line) {
+                    return handleMessage(browser, message);
+                }
+
+                @Override
+                public void onTitleChange(CefBrowser browser, String title) {
+                    if (browser instanceof ManagedBrowser managed) {
+                        managed.onTitleChanged(title);
+                    }
+                }
+
+                @Override
+                public void onAddressChange(CefBrowser browser, CefFrame frame, String url) {
+                    if (frame != null && frame.isMain() && browser instanceof ManagedBrowser managed) {
+                        managed.onAddressChanged(url);
+                    }
+                }
+            });
+            client.addLoadHandler(new CefLoadHandlerAdapter() {
+                @Override
+                public void onLoadingStateChange(CefBrowser browser, boolean isLoading, boolean canGoBack, boolean canGoForward) {
+                    if (browser instanceof ManagedBrowser managed) {
+                        managed.onLoadingStateChanged(isLoading);
+                    }
+                }
+
+                @Override
+                public void onLoadEnd(CefBrowser browser, CefFrame frame, int httpStatusCode) {
+                    if (frame != null && frame.isMain() && browser instanceof ManagedBrowser managed) {
+                        managed.onPageLoaded();
+                    }
+                }
+            });
+            registered = true;
+        } catch (Exception e) {
+            PIPBrowser.LOGGER.warn("Could not register browser event handlers: {}", e.getMessage());
+        }
+    }
+
+    private static boolean handleMessage(CefBrowser browser, String message) {
+        if (message == null || !message.startsWith(MESSAGE_PREFIX)) {
+            return false;
+        }
+        if (browser instanceof ManagedBrowser managed) {
+            String body = message.substring(MESSAGE_PREFIX.length());
+            int split = body.indexOf(':');
+            String key = split < 0 ? body : body.substring(0, split);
+            String value = split < 0 ? "" : body.substring(split + 1);
+            managed.onPageMessage(key, value);
+        }
+        return true;
+    }
+}
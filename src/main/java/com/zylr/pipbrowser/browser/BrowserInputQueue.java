@@ -0,0 +1,227 @@
+package com.zylr.pipbrowser.browser;
+
+import com.zylr.pipbrowser.PIPBrowser;
+import org.lwjgl.glfw.GLFW;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Batches mouse and text input for one browser. High poll rate mice and touchpads
+ * report far more moves and wheel ticks than CEF can use, and every event is
+ * an IPC message, so consecutive moves collapse into the latest position and
+ * consecutive wheel ticks are summed until the queue is flushed (once per
+ * frame by whoever draws the browser). Presses and releases flush right away,
+ * after the moves queued before them, so ordering and click positions stay exact.
+ * Typing is buffered the same way: key presses and releases of text keys are
+ * queued in order with the characters they produce and replayed as they came in
+ * at the frame's flush, so pages listening for keys (games, shortcuts, editors)
+ * see every event. Any other key (editing keys, shortcuts) flushes the buffer
+ * first and is sent right away.
+ */
+public class BrowserInputQueue {
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+    // Queued key events (presses, releases and characters) held at most, a longer burst is flushed early
+    private static final int MAX_TYPED = 512;
+    private static final int KEY_PRESS = 0;
+    private static final int KEY_RELEASE = 1;
+    private static final int KEY_CHAR = 2;
+
+    private static final AtomicLong received = new AtomicLong();
+    private static final AtomicLong sent = new AtomicLong();
+    private static volatile long windowStart = System.nanoTime();
+
+    private final ManagedBrowser browser;
+
+    // At most one pending move followed by at most one pending wheel
+    private boolean movePending = false;
+    private int moveX, moveY;
+    private boolean wheelPending = false;
+    private int wheelX, wheelY;
+    private double wheelDelta = 0;
+    private int wheelModifiers = 0;
+    // Queued key events, in arrival order
+    private final int[] keyKinds = new int[MAX_TYPED];
+    private final int[] keyCodes = new int[MAX_TYPED];
+    private final int[] keyScanCodes = new int[MAX_TYPED];
+    private final int[] keyModifiers = new int[MAX_TYPED];
+    private int keyCount = 0;
+
+    public BrowserInputQueue(ManagedBrowser browser) {
+        this.browser = browser;
+    }
+
+    public void mouseMove(int x, int y) {
+        received.incrementAndGet();
+        if (this.wheelPending) {
+            // Keep the wheel at the position it was scrolled at
+            flush();
+        }
+        this.movePending = true;
+        this.moveX = x;
+        this.moveY = y;
+    }
+
+    public void mouseWheel(int x, int y, double delta, int modifiers) {
+        received.incrementAndGet();
+        if (this.wheelPending && (modifiers != this.wheelModifiers || Math.signum(delta) != Math.signum(this.wheelDelta))) {
+            // Changing direction or modifiers (e.g. ctrl zoom) is a separate gesture
+            flush();
+        }
+        if (!this.wheelPending) {
+            this.wheelPending = true;
+            this.wheelDelta = 0;
+            this.wheelModifiers = modifiers;
+        }
+        this.wheelX = x;
+        this.wheelY = y;
+        this.wheelDelta += delta;
+    }
+
+    public void mousePress(int x, int y, int button) {
+        received.incrementAndGet();
+        flush();
+        this.browser.sendMousePress(x, y, button);
+        sent.incrementAndGet();
+    }
+
+    public void mouseRelease(int x, int y, int button) {
+        received.incrementAndGet();
+        flush();
+        this.browser.sendMouseRelease(x, y, button);
+        sent.incrementAndGet();
+    }
+
+    public void keyPress(int keyCode, int scanCode, int modifiers) {
+        received.incrementAndGet();
+        if (isTextKey(keyCode, modifiers)) {
+            queueKey(KEY_PRESS, keyCode, scanCode, modifiers);
+            return;
+        }
+        flush();
+        this.browser.sendKeyPress(keyCode, scanCode, modifiers);
+        sent.incrementAndGet();
+    }
+
+    public void keyRelease(int keyCode, int scanCode, int modifiers) {
+        received.incrementAndGet();
+        if (isTextKey(keyCode, modifiers)) {
+            queueKey(KEY_RELEASE, keyCode, scanCode, modifiers);
+            return;
+        }
+        flush();
+        this.browser.sendKeyRelease(keyCode, scanCode, modifiers);
+        sent.incrementAndGet();
+    }
+
+    public void charTyped(int codePoint, int modifiers) {
+        received.incrementAndGet();
+        queueKey(KEY_CHAR, codePoint, 0, modifiers);
+    }
+
+    // Printable keys without Ctrl/Alt/Super only produce text; everything else may act on the page right away
+    private static boolean isTextKey(int keyCode, int modifiers) {
+        boolean printable = (keyCode >= GLFW.GLFW_KEY_SPACE && keyCode <= GLFW.GLFW_KEY_WORLD_2)
+                || (keyCode >= GLFW.GLFW_KEY_KP_0 && keyCode <= GLFW.GLFW_KEY_KP_ADD);
+        return printable && (modifiers & (GLFW.GLFW_MOD_CONTROL | GLFW.GLFW_MOD_ALT | GLFW.GLFW_MOD_SUPER)) == 0;
+    }
+
+    private void queueKey(int kind, int code, int scanCode, int modifiers) {
+        this.keyKinds[this.keyCount] = kind;
+        this.keyCodes[this.keyCount] = code;
+        this.keyScanCodes[this.keyCount] = scanCode;
+        this.keyModifiers[this.keyCount] = modifiers;
+        this.keyCount++;
+        if (this.keyCount >= MAX_TYPED) {
+            flushTyped();
+        }
+    }
+
+    /**
+     * Paste text at the caret in one call, after everything queued before it. The key of the
+     * paste shortcut is sent instead when the page has no editable element focused.
+     */
+    public void paste(String text, int keyCode, int scanCode, int modifiers) {
+        received.incrementAndGet();
+        flush();
+        this.browser.pasteText(text, keyCode, scanCode, modifiers);
+        sent.incrementAndGet();
+    }
+
+    /**
+     * True for the platform's paste shortcut (Ctrl+V, or Cmd+V on macOS).
+     */
+    public static boolean isPasteShortcut(int keyCode, int modifiers) {
+        return keyCode == GLFW.GLFW_KEY_V
+                && (modifiers & (GLFW.GLFW_MOD_CONTROL | GLFW.GLFW_MOD_SUPER)) != 0
+                && (modifiers & (GLFW.GLFW_MOD_SHIFT | GLFW.GLFW_MOD_ALT)) == 0;
+    }
+
+    /**
+     * Send everything that is pending. Called once per frame, and before any event that has to
+     * reach CEF in order with the queued ones (mouse presses, non-text keys, pastes).
+     */
+    public void flush() {
+        flushTyped();
+        if (this.movePending) {
+            this.movePending = false;
+            this.browser.sendMouseMove(this.moveX, this.moveY);
+            sent.incrementAndGet();
+        }
+        if (this.wheelPending) {
+            sendWheel();
+        }
+        roll();
+    }
+
+    private void flushTyped() {
+        if (this.keyCount == 0) {
+            return;
+        }
+        for (int i = 0; i < this.keyCount; i++) {
+            int code = this.keyCodes[i];
+            int modifiers = this.keyModifiers[i];
+            switch (this.keyKinds[i]) {
+                case KEY_PRESS -> this.browser.sendKeyPress(code, this.keyScanCodes[i], modifiers);
+                case KEY_RELEASE -> this.browser.sendKeyRelease(code, this.keyScanCodes[i], modifiers);
+                default -> {
+                    if (Character.isBmpCodePoint(code)) {
+                        this.browser.sendKeyTyped((char) code, modifiers);
+                    } else {
+                        this.browser.sendKeyTyped(Character.highSurrogate(code), modifiers);
+                        this.browser.sendKeyTyped(Character.lowSurrogate(code), modifiers);
+                    }
+                }
+            }
+            sent.incrementAndGet();
+        }
+        this.keyCount = 0;
+    }
+
+    private void sendWheel() {
+        this.wheelPending = false;
+        if (this.wheelDelta != 0) {
+            this.browser.sendMouseWheel(this.wheelX, this.wheelY, this.wheelDelta, this.wheelModifiers);
+            sent.incrementAndGet();
+        }
+    }
+
+    public static long getReceived() {
+        return received.get();
+    }
+
+    public static long getSent() {
+        return sent.get();
+    }
+
+    private static void roll() {
+        long now = System.nanoTime();
+        if (now - windowStart < WINDOW_NANOS) {
+            return;
+        }
+        windowStart = now;
+        long in = received.get();
+        if (in > 0) {
+            PIPBrowser.LOGGER.debug("Browser input: {} events received, {} sent in total", in, sent.get());
+        }
+    }
+}
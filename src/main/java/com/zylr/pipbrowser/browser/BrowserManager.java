@@ -0,0 +1,271 @@
+package com.zylr.pipbrowser.browser;
+
+import com.cinemamod.mcef.MCEF;
+import com.zylr.pipbrowser.Config;
+import com.zylr.pipbrowser.PIPBrowser;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Owns every browser of the mod. Creating a CEF browser and closing one both
+ * cost a noticeable hitch, so widgets only queue the request here and the
+ * work is done from the client tick, a few per tick, instead of in the middle
+ * of a frame. Widgets show their placeholder until the browser is handed to
+ * them and has painted.
+ * <p>
+ * A small pool of hidden 1x1 about:blank browsers is kept warm while the game
+ * is idle, so a new tab only has to navigate instead of starting a renderer
+ * process. The pool only grows as large as recent tab opening needs, up to
+ * the configured {@code browserPoolSize}, and empties when no tabs are opened.
+ * <p>
+ * While a link confirmation is on screen the link is preloaded in one
+ * throttled browser; if the link is opened, the tab that asks for it gets the
+ * already rendered page, otherwise the preload is closed again.
+ */
+public class BrowserManager {
+    // Creations and closes done per client tick, spreading a burst (session restore, closing many tabs) over ticks
+    private static final int CREATES_PER_TICK = 1;
+    private static final int CLOSES_PER_TICK = 2;
+    // Tab opens older than this no longer count towards the pool size
+    private static final long DEMAND_WINDOW_NANOS = 5L * 60 * 1_000_000_000L;
+    // No refill until the manager had nothing else to do for this long
+    private static final long IDLE_NANOS = 2_000_000_000L;
+    private static final String BLANK_URL = "about:blank";
+    // Paints per second of a preload, enough to have a current frame when it is shown
+    private static final int PRELOAD_FRAME_RATE = 2;
+    // A preload nobody opened is closed after this long, a claimed one soon after the claim
+    private static final long PRELOAD_TIMEOUT_NANOS = 30_000_000_000L;
+    private static final long CLAIM_TIMEOUT_NANOS = 5_000_000_000L;
+
+    private static final Deque<Request> creates = new ArrayDeque<>();
+    private static final Deque<ManagedBrowser> closes = new ArrayDeque<>();
+    private static final Set<ManagedBrowser> live = Collections.newSetFromMap(new IdentityHashMap<>());
+    private static final Deque<ManagedBrowser> pool = new ArrayDeque<>();
+    private static final Deque<Long> recentOpens = new ArrayDeque<>();
+    private static long lastBusy = System.nanoTime();
+    private static String preloadUrl;
+    private static Request preloadRequest;
+    private static ManagedBrowser preloaded;
+    private static boolean preloadClaimed = false;
+    private static long preloadDeadline = 0;
+
+    /**
+     * A queued browser creation; {@link #cancel()} it if the widget goes away first.
+     */
+    public static class Request {
+        private final String url;
+        private final boolean transparent;
+        private final Consumer<ManagedBrowser> onCreated;
+        private boolean cancelled = false;
+
+        private Request(String url, boolean transparent, Consumer<ManagedBrowser> onCreated) {
+            this.url = url;
+            this.transparent = transparent;
+            this.onCreated = onCreated;
+        }
+
+        public void cancel() {
+            this.cancelled = true;
+        }
+    }
+
+    /**
+     * Queue a browser for the given URL. {@code onCreated} runs on the client thread once it exists.
+     */
+    public static Request create(String url, boolean transparent, Consumer<ManagedBrowser> onCreated) {
+        Request request = new Request(url, transparent, onCreated);
+        creates.add(request);
+        recentOpens.add(System.nanoTime());
+        return request;
+    }
+
+    /**
+     * Start loading {@code url} in a hidden, throttled browser of the given pixel size, in case it
+     * is opened soon. Replaces any other preload; does nothing if the data saver is on.
+     */
+    public static void preload(String url, int width, int height) {
+        if (url == null || Config.isDataSaverEnabled()) {
+            return;
+        }
+        if (url.equals(preloadUrl)) {
+            return;
+        }
+        dropPreload();
+        preloadUrl = url;
+        preloadClaimed = false;
+        preloadDeadline = System.nanoTime() + PRELOAD_TIMEOUT_NANOS;
+        // Not counted as a tab open, a preload that is never used should not grow the pool
+        preloadRequest = new Request(url, true, browser -> {
+            preloadRequest = null;
+            preloaded = browser;
+            browser.resize(Math.max(1, width), Math.max(1, height));
+            browser.setFrameRate(PRELOAD_FRAME_RATE);
+        });
+        creates.add(preloadRequest);
+    }
+
+    /**
+     * The preloaded link is being opened: keep the preload for the next browser requested for {@code url}.
+     */
+    public static void claimPreload(String url) {
+        if (url != null && url.equals(preloadUrl)) {
+            preloadClaimed = true;
+            preloadDeadline = System.nanoTime() + CLAIM_TIMEOUT_NANOS;
+        }
+    }
+
+    /**
+     * The link confirmation went away; close the preload unless it was claimed.
+     */
+    public static void releasePreload() {
+        if (!preloadClaimed) {
+            dropPreload();
+        }
+    }
+
+    private static void dropPreload() {
+        if (preloadRequest != null) {
+            preloadRequest.cancel();
+        }
+        if (preloaded != null) {
+            close(preloaded);
+        }
+        preloadUrl = null;
+        preloadRequest = null;
+        preloaded = null;
+        preloadClaimed = false;
+        preloadDeadline = 0;
+    }
+
+    /**
+     * Release the browser's input and close it on a later tick. The caller must drop its reference.
+     */
+    public static void close(ManagedBrowser browser) {
+        if (browser == null || closes.contains(browser)) {
+            return;
+        }
+        try {
+            browser.setFocus(false);
+            browser.sendMouseRelease(-1, -1, -1);
+            browser.sendKeyPress(256, 1, 0);
+            browser.sendKeyRelease(256, 1, 0);
+        } catch (Throwable ignore) {
+        }
+        // Stop painting right away, the close itself can wait
+        browser.setPaintingPaused(true);
+        closes.add(browser);
+    }
+
+    public static int getLiveCount() {
+        return live.size() - pool.size() - (preloaded != null ? 1 : 0);
+    }
+
+    public static int getPoolSize() {
+        return pool.size();
+    }
+
+    public static boolean isBusy() {
+        return !creates.isEmpty() || !closes.isEmpty();
+    }
+
+    // Called at the end of every client tick
+    public static void tick() {
+        long now = System.nanoTime();
+        if (isBusy()) {
+            lastBusy = now;
+        }
+        if (preloadDeadline != 0 && now - preloadDeadline > 0) {
+            dropPreload();
+        }
+        for (int i = 0; i < CLOSES_PER_TICK && !closes.isEmpty(); i++) {
+            ManagedBrowser browser = closes.poll();
+            live.remove(browser);
+            try {
+                browser.close();
+            } catch (Throwable t) {
+                PIPBrowser.LOGGER.warn("Failed to close browser instance cleanly: {}", t.getMessage());
+            }
+        }
+
+        if (!MCEF.isInitialized()) {
+            return;
+        }
+        int created = 0;
+        while (created < CREATES_PER_TICK && !creates.isEmpty()) {
+            Request request = creates.poll();
+            if (request.cancelled) {
+                continue;
+            }
+            // A preloaded or warm browser is already running, so it does not count against the creation pace
+            ManagedBrowser pooled = takePreloaded(request);
+            if (pooled == null && request.transparent) {
+                pooled = takePooled(request.url);
+            }
+            if (pooled != null) {
+                request.onCreated.accept(pooled);
+                continue;
+            }
+            try {
+                ManagedBrowser browser = ManagedBrowser.create(request.url, request.transparent);
+                live.add(browser);
+                request.onCreated.accept(browser);
+            } catch (Exception e) {
+                PIPBrowser.LOGGER.error("Failed to initialize MCEF browser: {}", e.getMessage(), e);
+            }
+            created++;
+        }
+
+        if (!isBusy() && now - lastBusy >= IDLE_NANOS) {
+            maintainPool(now);
+        }
+    }
+
+    // The preload goes to the first browser asked for its URL once it exists
+    private static ManagedBrowser takePreloaded(Request request) {
+        if (preloaded == null || request == preloadRequest || !request.transparent || !request.url.equals(preloadUrl)) {
+            return null;
+        }
+        ManagedBrowser browser = preloaded;
+        preloaded = null;
+        dropPreload();
+        return browser;
+    }
+
+    private static ManagedBrowser takePooled(String url) {
+        ManagedBrowser browser = pool.poll();
+        if (browser == null) {
+            return null;
+        }
+        browser.setPaintingPaused(false);
+        browser.loadURL(url);
+        return browser;
+    }
+
+    // Grow by one browser or trim by one per idle tick towards the size recent demand asks for
+    private static void maintainPool(long now) {
+        while (!recentOpens.isEmpty() && now - recentOpens.peekFirst() > DEMAND_WINDOW_NANOS) {
+            recentOpens.pollFirst();
+        }
+        // One warm browser per two tabs opened recently, capped by the config
+        int target = Math.min(Math.max(0, Config.getBrowserPoolSize()), (recentOpens.size() + 1) / 2);
+        if (pool.size() > target) {
+            close(pool.pollLast());
+        } else if (pool.size() < target) {
+            try {
+                ManagedBrowser browser = ManagedBrowser.create(BLANK_URL, true);
+                browser.resize(1, 1);
+                // Hidden until handed out, CEF does not paint it
+                browser.setPaintingPaused(true);
+                live.add(browser);
+                pool.add(browser);
+            } catch (Exception e) {
+                PIPBrowser.LOGGER.warn("Could not pre-create a browser: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.zylr.pipbrowser.browser;
+
+/**
+ * Where a browser is currently shown. Each surface has its own paint rate
+ * target, read from the widget config.
+ */
+public enum BrowserSurface {
+    HUD("hudFrameRate", 30),
+    FULLSCREEN("fullscreenFrameRate", 60),
+    BACKGROUND("backgroundFrameRate", 1);
+
+    private final String configKey;
+    private final int defaultFrameRate;
+
+    BrowserSurface(String configKey, int defaultFrameRate) {
+        this.configKey = configKey;
+        this.defaultFrameRate = defaultFrameRate;
+    }
+
+    public String getConfigKey() {
+        return this.configKey;
+    }
+
+    public int getDefaultFrameRate() {
+        return this.defaultFrameRate;
+    }
+}
@@ -0,0 +1,178 @@
+package com.zylr.pipbrowser.browser;
+
+import com.mojang.blaze3d.opengl.GlStateManager;
+import com.mojang.blaze3d.opengl.GlTexture;
+import com.mojang.blaze3d.systems.GpuDevice;
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.textures.AddressMode;
+import com.mojang.blaze3d.textures.FilterMode;
+import com.mojang.blaze3d.textures.GpuTexture;
+import com.mojang.blaze3d.textures.TextureFormat;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.texture.AbstractTexture;
+import net.minecraft.resources.ResourceLocation;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+
+import java.nio.ByteBuffer;
+
+/**
+ * GPU texture that receives CEF paints. The texture is allocated with spare
+ * capacity so a browser that is being resized keeps writing into the same
+ * allocation; only the top-left content region is valid and callers draw it
+ * with sub-region UVs (see {@link #getContentWidth()} / {@link #getWidth()}).
+ */
+public class BrowserTexture extends AbstractTexture {
+    // Capacity grows in whole steps plus some headroom, so small size changes never reallocate
+    private static final int CAPACITY_STEP = 256;
+    private static final float CAPACITY_HEADROOM = 1.25f;
+
+    private final ResourceLocation location;
+    private int capacityWidth = 0;
+    private int capacityHeight = 0;
+    private int contentWidth = 0;
+    private int contentHeight = 0;
+    private boolean registered = false;
+    // Bumped whenever the texture contents change, lets cached composites know they are stale
+    private long sequence = 0;
+
+    public BrowserTexture(ResourceLocation location) {
+        this.location = location;
+    }
+
+    /**
+     * Makes sure a width x height frame fits into the texture.
+     * @return true if the texture had to be (re)allocated, in which case its contents are undefined
+     */
+    public boolean ensureCapacity(int width, int height) {
+        this.contentWidth = width;
+        this.contentHeight = height;
+        if (this.texture != null && width <= this.capacityWidth && height <= this.capacityHeight) {
+            return false;
+        }
+
+        GpuDevice device = RenderSystem.getDevice();
+        int maxSize = device.getMaxTextureSize();
+        int newWidth = Math.min(maxSize, roundUp((int) (width * CAPACITY_HEADROOM)));
+        int newHeight = Math.min(maxSize, roundUp((int) (height * CAPACITY_HEADROOM)));
+        // Never shrink below the current allocation, going back and forth would thrash
+        newWidth = Math.max(newWidth, this.capacityWidth);
+        newHeight = Math.max(newHeight, this.capacityHeight);
+
+        releaseGpuTexture();
+        this.texture = device.createTexture(this.location::toString,
+                GpuTexture.USAGE_TEXTURE_BINDING | GpuTexture.USAGE_COPY_DST,
+                TextureFormat.RGBA8, newWidth, newHeight, 1, 1);
+        this.texture.setTextureFilter(FilterMode.LINEAR, false);
+        this.texture.setAddressMode(AddressMode.CLAMP_TO_EDGE);
+        this.textureView = device.createTextureView(this.texture);
+        this.capacityWidth = newWidth;
+        this.capacityHeight = newHeight;
+        this.sequence++;
+
+        if (!this.registered) {
+            Minecraft.getInstance().getTextureManager().register(this.location, this);
+            this.registered = true;
+        }
+        return true;
+    }
+
+    /**
+     * Uploads a region of a BGRA frame buffer into the texture.
+     * @param rowLength width in pixels of one row of {@code buffer}
+     */
+    public void upload(ByteBuffer buffer, int rowLength, int srcX, int srcY, int dstX, int dstY, int width, int height) {
+        if (this.texture == null || width <= 0 || height <= 0) {
+            return;
+        }
+        GlStateManager._bindTexture(((GlTexture) this.texture).glId());
+        GL11.glPixelStorei(GL11.GL_UNPACK_ROW_LENGTH, rowLength);
+        GL11.glPixelStorei(GL11.GL_UNPACK_SKIP_PIXELS, srcX);
+        GL11.glPixelStorei(GL11.GL_UNPACK_SKIP_ROWS, srcY);
+        GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 4);
+        GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, dstX, dstY, width, height,
+                GL12.GL_BGRA, GL12.GL_UNSIGNED_INT_8_8_8_8_REV, buffer);
+        GL11.glPixelStorei(GL11.GL_UNPACK_ROW_LENGTH, 0);
+        GL11.glPixelStorei(GL11.GL_UNPACK_SKIP_PIXELS, 0);
+        GL11.glPixelStorei(GL11.GL_UNPACK_SKIP_ROWS, 0);
+        this.sequence++;
+    }
+
+    /**
+     * Uploads a region from the currently bound pixel unpack buffer.
+     * @param offset    byte offset of the first pixel in the bound buffer
+     * @param rowLength width in pixels of one row in the buffer
+     */
+    public void uploadFromPixelBuffer(long offset, int rowLength, int dstX, int dstY, int width, int height) {
+        if (this.texture == null || width <= 0 || height <= 0) {
+            return;
+        }
+        GlStateManager._bindTexture(((GlTexture) this.texture).glId());
+        GL11.glPixelStorei(GL11.GL_UNPACK_ROW_LENGTH, rowLength);
+        // Vanilla leaves its skip values set, they would shift the read away from offset
+        GL11.glPixelStorei(GL11.GL_UNPACK_SKIP_PIXELS, 0);
+        GL11.glPixelStorei(GL11.GL_UNPACK_SKIP_ROWS, 0);
+        GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 4);
+        GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, dstX, dstY, width, height,
+                GL12.GL_BGRA, GL12.GL_UNSIGNED_INT_8_8_8_8_REV, offset);
+        GL11.glPixelStorei(GL11.GL_UNPACK_ROW_LENGTH, 0);
+        this.sequence++;
+    }
+
+    public ResourceLocation getLocation() {
+        return this.location;
+    }
+
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    public boolean isAllocated() {
+        return this.texture != null;
+    }
+
+    // Full allocated size, used as the texture size when blitting
+    public int getWidth() {
+        return this.capacityWidth;
+    }
+
+    public int getHeight() {
+        return this.capacityHeight;
+    }
+
+    // Size of the valid region in the top-left corner
+    public int getContentWidth() {
+        return this.contentWidth;
+    }
+
+    public int getContentHeight() {
+        return this.contentHeight;
+    }
+
+    public void release() {
+        if (this.registered) {
+            // TextureManager.release closes the texture for us
+            Minecraft.getInstance().getTextureManager().release(this.location);
+            this.registered = false;
+        } else {
+            releaseGpuTexture();
+        }
+        this.capacityWidth = 0;
+        this.capacityHeight = 0;
+    }
+
+    private void releaseGpuTexture() {
+        if (this.textureView != null) {
+            this.textureView.close();
+            this.textureView = null;
+        }
+        if (this.texture != null) {
+            this.texture.close();
+            this.texture = null;
+        }
+    }
+
+    private static int roundUp(int size) {
+        return Math.max(CAPACITY_STEP, (size + CAPACITY_STEP - 1) / CAPACITY_STEP * CAPACITY_STEP);
+    }
+}
@@ -0,0 +1,59 @@
+package com.zylr.pipbrowser.browser;
+
+import com.zylr.pipbrowser.PIPBrowser;
+import org.cef.browser.CefBrowser;
+
+import java.lang.reflect.Method;
+
+/**
+ * Calls into CEF browser methods that only some JCEF builds expose. Lookups
+ * are done once; callers fall back to their own behaviour when a method is
+ * missing.
+ */
+public class CefCompat {
+    private static Method wasHidden;
+    private static boolean wasHiddenLooked = false;
+
+    /**
+     * Tell CEF the browser was hidden or shown, which stops compositing and lets Chromium
+     * throttle the page like a background tab.
+     * @return false if this JCEF build has no way to do that
+     */
+    public static boolean wasHidden(CefBrowser browser, boolean hidden) {
+        if (!canHide(browser)) {
+            return false;
+        }
+        try {
+            wasHidden.invoke(browser, hidden);
+            return true;
+        } catch (Exception e) {
+            PIPBrowser.LOGGER.warn("Could not call CEF wasHidden: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    public static boolean canHide(CefBrowser browser) {
+        if (!wasHiddenLooked) {
+            wasHidden = findMethod(browser.getClass(), "wasHidden", boolean.class);
+            wasHiddenLooked = true;
+            if (wasHidden == null) {
+                PIPBrowser.LOGGER.info("CEF wasHidden is not available, falling back to frame rate and JavaScript throttling");
+            }
+        }
+        return wasHidden != null;
+    }
+
+    private static Method findMethod(Class<?> type, String name, Class<?>... parameters) {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            try {
+                Method method = c.getDeclaredMethod(name, parameters);
+                method.setAccessible(true);
+                return method;
+            } catch (NoSuchMethodException ignored) {
+            } catch (Exception e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
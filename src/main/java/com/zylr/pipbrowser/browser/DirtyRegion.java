@@ -0,0 +1,137 @@
+package com.zylr.pipbrowser.browser;
+
+import java.awt.*;
+
+/**
+ * Merges the dirty rectangles of a CEF paint into a few upload regions.
+ * Overlapping or nearby rectangles are combined so we don't issue many tiny
+ * uploads, and the total is capped at {@link #MAX_RECTS}. Storage is reused
+ * between paints.
+ */
+public class DirtyRegion {
+    public static final int MAX_RECTS = 8;
+    // Two rects are merged when their union wastes less than this fraction of extra area
+    private static final float MERGE_SLACK = 0.25f;
+
+    // x, y, width, height per rect
+    private final int[] rects = new int[MAX_RECTS * 4];
+    private int count = 0;
+
+    /**
+     * Replace the region with the given dirty rects, clipped to the frame.
+     */
+    public void set(Rectangle[] dirtyRects, int frameWidth, int frameHeight) {
+        this.count = 0;
+        if (dirtyRects == null) {
+            return;
+        }
+        for (Rectangle r : dirtyRects) {
+            int x0 = Math.max(0, r.x);
+            int y0 = Math.max(0, r.y);
+            int x1 = Math.min(frameWidth, r.x + r.width);
+            int y1 = Math.min(frameHeight, r.y + r.height);
+            if (x1 > x0 && y1 > y0) {
+                add(x0, y0, x1 - x0, y1 - y0);
+            }
+        }
+        // Merging two rects can make the result overlap a third one
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int i = 0; i < this.count && !merged; i++) {
+                for (int j = i + 1; j < this.count; j++) {
+                    if (shouldMerge(i, j)) {
+                        mergeInto(i, j);
+                        merged = true;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return this.count;
+    }
+
+    public int x(int i) { return this.rects[i * 4]; }
+    public int y(int i) { return this.rects[i * 4 + 1]; }
+    public int width(int i) { return this.rects[i * 4 + 2]; }
+    public int height(int i) { return this.rects[i * 4 + 3]; }
+
+    // Total number of pixels covered (the merged rects never overlap)
+    public long area() {
+        long area = 0;
+        for (int i = 0; i < this.count; i++) {
+            area += (long) width(i) * height(i);
+        }
+        return area;
+    }
+
+    public boolean intersects(Rectangle r) {
+        for (int i = 0; i < this.count; i++) {
+            if (x(i) < r.x + r.width && r.x < x(i) + width(i) && y(i) < r.y + r.height && r.y < y(i) + height(i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void add(int x, int y, int w, int h) {
+        if (this.count == MAX_RECTS) {
+            // Out of slots: fold into the rect whose union grows the least
+            int best = 0;
+            long bestGrowth = Long.MAX_VALUE;
+            for (int i = 0; i < this.count; i++) {
+                long growth = unionArea(i, x, y, w, h) - (long) width(i) * height(i);
+                if (growth < bestGrowth) {
+                    bestGrowth = growth;
+                    best = i;
+                }
+            }
+            union(best, x, y, w, h);
+            return;
+        }
+        int o = this.count * 4;
+        this.rects[o] = x;
+        this.rects[o + 1] = y;
+        this.rects[o + 2] = w;
+        this.rects[o + 3] = h;
+        this.count++;
+    }
+
+    private boolean shouldMerge(int i, int j) {
+        long separate = (long) width(i) * height(i) + (long) width(j) * height(j);
+        long union = unionArea(i, x(j), y(j), width(j), height(j));
+        boolean overlap = x(i) < x(j) + width(j) && x(j) < x(i) + width(i) && y(i) < y(j) + height(j) && y(j) < y(i) + height(i);
+        return overlap || union <= separate * (1.0f + MERGE_SLACK);
+    }
+
+    private void mergeInto(int i, int j) {
+        union(i, x(j), y(j), width(j), height(j));
+        // Move the last rect into j's slot
+        int last = (this.count - 1) * 4;
+        System.arraycopy(this.rects, last, this.rects, j * 4, 4);
+        this.count--;
+    }
+
+    private long unionArea(int i, int x, int y, int w, int h) {
+        int x0 = Math.min(x(i), x);
+        int y0 = Math.min(y(i), y);
+        int x1 = Math.max(x(i) + width(i), x + w);
+        int y1 = Math.max(y(i) + height(i), y + h);
+        return (long) (x1 - x0) * (y1 - y0);
+    }
+
+    private void union(int i, int x, int y, int w, int h) {
+        int x0 = Math.min(x(i), x);
+        int y0 = Math.min(y(i), y);
+        int x1 = Math.max(x(i) + width(i), x + w);
+        int y1 = Math.max(y(i) + height(i), y + h);
+        int o = i * 4;
+        this.rects[o] = x0;
+        this.rects[o + 1] = y0;
+        this.rects[o + 2] = x1 - x0;
+        this.rects[o + 3] = y1 - y0;
+    }
+}
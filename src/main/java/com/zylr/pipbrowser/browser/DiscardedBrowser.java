@@ -0,0 +1,10 @@
+package com.zylr.pipbrowser.browser;
+
+/**
+ * What is kept of a tab whose browser was closed to save memory: enough to
+ * show a preview and rebuild it where the user left off.
+ * @param thumbnail ARGB pixels, row by row, or null if the page never painted
+ */
+public record DiscardedBrowser(String url, String title, int scrollX, int scrollY,
+                               int[] thumbnail, int thumbnailWidth, int thumbnailHeight) {
+}
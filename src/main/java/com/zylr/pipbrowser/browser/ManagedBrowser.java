@@ -0,0 +1,531 @@
+package com.zylr.pipbrowser.browser;
+
+import com.cinemamod.mcef.MCEF;
+import com.cinemamod.mcef.MCEFBrowser;
+import com.cinemamod.mcef.MCEFClient;
+import com.google.gson.JsonPrimitive;
+import com.zylr.pipbrowser.PIPBrowser;
+import net.minecraft.resources.ResourceLocation;
+import org.cef.browser.CefBrowser;
+import org.cef.browser.CefFrame;
+import org.cef.handler.CefScreenInfo;
+
+import java.awt.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * MCEF browser that paints into our own {@link BrowserTexture} instead of the
+ * MCEF renderer, so we control when GPU memory is (re)allocated.
+ */
+public class ManagedBrowser extends MCEFBrowser {
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+    // Above this share of the frame a single full upload is cheaper than several partial ones
+    private static final float FULL_UPLOAD_COVERAGE = 0.5f;
+    // CEF ignores windowless frame rates above this
+    private static final int MAX_FRAME_RATE = 60;
+    // Last configured rate reported as capped, so every browser applying it logs once in total
+    private static int cappedFrameRate = 0;
+
+    // Reports whether any audible media element is playing and where the page is scrolled, re-run on every page load
+    private static final String PAGE_PROBE_SCRIPT =
+            "(function(){if(window.__pipbrowserMedia)return;window.__pipbrowserMedia=true;" +
+            "var report=function(){var playing=false;" +
+            "document.querySelectorAll('video,audio').forEach(function(m){if(!m.paused&&!m.ended&&!m.muted&&m.volume>0)playing=true;});" +
+            "console.log('" + BrowserEvents.MESSAGE_PREFIX + "media:'+(playing?1:0));};" +
+            "['play','playing','pause','ended','volumechange','emptied'].forEach(function(t){document.addEventListener(t,report,true);});" +
+            "var timer=0;window.addEventListener('scroll',function(){clearTimeout(timer);timer=setTimeout(function(){" +
+            "console.log('" + BrowserEvents.MESSAGE_PREFIX + "scroll:'+Math.round(window.scrollX)+','+Math.round(window.scrollY));},250);},{passive:true});" +
+            "report();})();";
+    // Inserts %s into the focused editable element, inside open shadow roots too; anything else gets a native paste
+    private static final String PASTE_SCRIPT =
+            "(function(){var e=document.activeElement;" +
+            "while(e&&e.shadowRoot&&e.shadowRoot.activeElement)e=e.shadowRoot.activeElement;" +
+            "var field=e&&(e.tagName==='TEXTAREA'||(e.tagName==='INPUT'&&/^(text|search|url|tel|email|password)?$/i.test(e.type)));" +
+            "var editable=e&&(e.isContentEditable||(field&&!e.readOnly&&!e.disabled));" +
+            "if(!editable||!document.execCommand('insertText',false,%s))" +
+            "console.log('" + BrowserEvents.MESSAGE_PREFIX + "nativepaste');})();";
+    // Thumbnails for discarded tabs are sampled from paints at most this often
+    private static final long THUMBNAIL_INTERVAL_NANOS = 2_000_000_000L;
+    private static final int THUMBNAIL_WIDTH = 192;
+    // Fallback for JCEF builds without wasHidden: stretch timers and animation frames to 1s and report the page as hidden
+    private static final String THROTTLE_SCRIPT =
+            "(function(){if(window.__pipbrowserHidden)return;" +
+            "var o=window.__pipbrowserHidden={st:window.setTimeout,si:window.setInterval,raf:window.requestAnimationFrame,caf:window.cancelAnimationFrame};" +
+            "var slow=function(fn){return function(f,d){var a=Array.prototype.slice.call(arguments,2);return fn.apply(window,[f,Math.max(d||0,1000)].concat(a));};};" +
+            "window.setTimeout=slow(o.st);window.setInterval=slow(o.si);" +
+            "window.requestAnimationFrame=function(cb){return o.st.call(window,function(){cb(performance.now());},1000);};" +
+            "window.cancelAnimationFrame=function(id){clearTimeout(id);};" +
+            "Object.defineProperty(document,'hidden',{configurable:true,get:function(){return true;}});" +
+            "Object.defineProperty(document,'visibilityState',{configurable:true,get:function(){return 'hidden';}});" +
+            "document.dispatchEvent(new Event('visibilitychange'));})();";
+    private static final String UNTHROTTLE_SCRIPT =
+            "(function(){var o=window.__pipbrowserHidden;if(!o)return;" +
+            "window.setTimeout=o.st;window.setInterval=o.si;window.requestAnimationFrame=o.raf;window.cancelAnimationFrame=o.caf;" +
+            "delete document.hidden;delete document.visibilityState;window.__pipbrowserHidden=null;" +
+            "document.dispatchEvent(new Event('visibilitychange'));})();";
+
+    private final BrowserTexture texture;
+    private boolean textureReady = false;
+    private Rectangle popupRect = null;
+    private double deviceScaleFactor = 1.0;
+
+    private final DirtyRegion dirtyRegion = new DirtyRegion();
+    private int paintedWidth = 0;
+    private int paintedHeight = 0;
+    private ByteBuffer popupFrame = null;
+    private int popupFrameWidth = 0;
+    private int popupFrameHeight = 0;
+    private final PixelBufferUploader uploader = new PixelBufferUploader();
+    private final BrowserInputQueue inputQueue = new BrowserInputQueue(this);
+    private boolean usePixelBuffers = true;
+    private long uploadBudget = 0;
+    private int frameRate = -1;
+    private int appliedFrameRate = -1;
+    private boolean paintingPaused = false;
+    private boolean cefHidden = false;
+
+    private volatile boolean playingMedia = false;
+    private boolean suspendRequested = false;
+    private boolean exemptWhilePlaying = true;
+    private boolean suspended = false;
+
+    // Written by the CEF callbacks, read by the render thread without locking
+    private final AtomicReference<PageState> pageState;
+    private volatile int scrollX = 0;
+    private volatile int scrollY = 0;
+    // Shortcut of the last paste, replayed when the page has nothing editable focused
+    private volatile int pasteKeyCode = 0;
+    private volatile int pasteScanCode = 0;
+    private volatile int pasteModifiers = 0;
+    private int pendingScrollX = -1;
+    private int pendingScrollY = -1;
+    private int[] thumbnail = null;
+    private int thumbnailWidth = 0;
+    private int thumbnailHeight = 0;
+    private long lastThumbnailTime = 0;
+
+    public ManagedBrowser(MCEFClient client, String url, boolean transparent) {
+        super(client, url, transparent);
+        // Until CEF reports the first address change
+        this.pageState = new AtomicReference<>(PageState.EMPTY.withUrl(url));
+        this.texture = new BrowserTexture(ResourceLocation.fromNamespaceAndPath(PIPBrowser.MODID, "browser/" + NEXT_ID.getAndIncrement()));
+    }
+
+    /**
+     * Same as {@link MCEF#createBrowser(String, boolean)} but returns a managed browser. Only {@link BrowserManager} creates browsers.
+     */
+    static ManagedBrowser create(String url, boolean transparent) {
+        BrowserEvents.register();
+        ManagedBrowser browser = new ManagedBrowser(MCEF.getClient(), url, transparent);
+        browser.setCloseAllowed();
+        browser.createImmediately();
+        return browser;
+    }
+
+    @Override
+    public void onPaint(CefBrowser browser, boolean popup, Rectangle[] dirtyRects, ByteBuffer buffer, int width, int height) {
+        if (popup) {
+            // Popups (e.g. <select> dropdowns) are painted on top of the page at the popup position
+            if (this.popupRect != null && this.textureReady) {
+                // Queued page bands must land before the popup or they would cover it
+                this.uploader.flush(this.texture);
+                keepPopupFrame(buffer, width, height);
+                uploadPopup();
+            }
+            return;
+        }
+
+        // Finish the previous frame before the texture can be reallocated under it
+        this.uploader.flush(this.texture);
+        boolean reallocated = this.texture.ensureCapacity(width, height);
+        boolean sizeChanged = width != this.paintedWidth || height != this.paintedHeight;
+        this.paintedWidth = width;
+        this.paintedHeight = height;
+        long frameBytes = (long) width * height * 4;
+
+        this.dirtyRegion.set(dirtyRects, width, height);
+        boolean full = reallocated || sizeChanged || !this.textureReady
+                || this.dirtyRegion.size() == 0
+                || this.dirtyRegion.area() >= (long) ((long) width * height * FULL_UPLOAD_COVERAGE);
+        if (this.usePixelBuffers) {
+            this.uploader.begin(this.texture, frameBytes);
+        }
+        if (full) {
+            uploadRegion(buffer, width, 0, 0, width, height);
+            UploadStats.recordFull(frameBytes);
+        } else {
+            long bytes = 0;
+            for (int i = 0; i < this.dirtyRegion.size(); i++) {
+                int w = this.dirtyRegion.width(i);
+                int h = this.dirtyRegion.height(i);
+                uploadRegion(buffer, width, this.dirtyRegion.x(i), this.dirtyRegion.y(i), w, h);
+                bytes += (long) w * h * 4;
+            }
+            UploadStats.recordPartial(bytes);
+        }
+
+        // The page paint may have drawn over an open popup, put it back on top
+        boolean coversPopup = this.popupRect != null && this.popupFrame != null
+                && (full || this.dirtyRegion.intersects(this.popupRect));
+        if (this.usePixelBuffers) {
+            // A first frame, a fresh allocation or a frame under a popup must not show half-uploaded
+            boolean uploadNow = !this.textureReady || reallocated || coversPopup;
+            this.uploader.end(this.texture, uploadNow ? 0 : this.uploadBudget);
+        }
+        this.textureReady = true;
+        if (coversPopup) {
+            uploadPopup();
+        }
+
+        long now = System.nanoTime();
+        if (this.thumbnail == null || now - this.lastThumbnailTime > THUMBNAIL_INTERVAL_NANOS) {
+            this.lastThumbnailTime = now;
+            captureThumbnail(buffer, width, height);
+        }
+    }
+
+    // Nearest-neighbour downsample of the frame, BGRA bytes read as little-endian ints are ARGB
+    private void captureThumbnail(ByteBuffer buffer, int width, int height) {
+        int thumbWidth = Math.min(THUMBNAIL_WIDTH, width);
+        int thumbHeight = Math.max(1, (int) ((long) height * thumbWidth / width));
+        if (this.thumbnail == null || this.thumbnail.length != thumbWidth * thumbHeight) {
+            this.thumbnail = new int[thumbWidth * thumbHeight];
+        }
+        boolean swap = buffer.order() != ByteOrder.LITTLE_ENDIAN;
+        for (int y = 0; y < thumbHeight; y++) {
+            int row = (int) ((long) y * height / thumbHeight) * width;
+            for (int x = 0; x < thumbWidth; x++) {
+                int column = (int) ((long) x * width / thumbWidth);
+                int pixel = buffer.getInt((row + column) * 4);
+                this.thumbnail[y * thumbWidth + x] = (swap ? Integer.reverseBytes(pixel) : pixel) | 0xFF000000;
+            }
+        }
+        this.thumbnailWidth = thumbWidth;
+        this.thumbnailHeight = thumbHeight;
+    }
+
+    /**
+     * Snapshot what is needed to rebuild this browser later; the caller closes it afterwards.
+     */
+    public DiscardedBrowser snapshot(String fallbackTitle) {
+        // From the state CEF last reported, so this never has to call into CEF (e.g. while the game shuts down)
+        PageState page = this.pageState.get();
+        String pageTitle = page.title().isEmpty() ? fallbackTitle : page.title();
+        return new DiscardedBrowser(page.url(), pageTitle, this.scrollX, this.scrollY,
+                this.thumbnail, this.thumbnailWidth, this.thumbnailHeight);
+    }
+
+    /**
+     * Scroll to the given position once the first page has loaded (used when rebuilding a discarded tab).
+     */
+    public void restoreScroll(int x, int y) {
+        this.pendingScrollX = x;
+        this.pendingScrollY = y;
+    }
+
+    public String getTitle() {
+        return this.pageState.get().title();
+    }
+
+    /**
+     * URL, title and loading state as last reported by CEF; compare {@link PageState#version()} to see if anything changed.
+     */
+    public PageState getPageState() {
+        return this.pageState.get();
+    }
+
+    private void uploadRegion(ByteBuffer buffer, int rowLength, int x, int y, int width, int height) {
+        if (this.usePixelBuffers) {
+            this.uploader.add(buffer, rowLength, x, y, width, height);
+        } else {
+            this.texture.upload(buffer, rowLength, x, y, x, y, width, height);
+        }
+    }
+
+    /**
+     * Upload rows of a large frame that did not fit into the budget of the frame it was painted in.
+     * Called once per rendered frame by whoever draws this browser.
+     */
+    public void drainUploads() {
+        if (this.uploader.hasPending()) {
+            this.uploader.drain(this.texture, this.uploadBudget);
+        }
+    }
+
+    /**
+     * Insert text at the caret of the focused element in a single call. Runs in the focused frame
+     * (iframes included); when no editable element has focus there (canvas editors, pages handling
+     * keys or paste events themselves) the page asks for the original shortcut to be replayed, so
+     * CEF pastes natively.
+     */
+    public void pasteText(String text, int keyCode, int scanCode, int modifiers) {
+        this.pasteKeyCode = keyCode;
+        this.pasteScanCode = scanCode;
+        this.pasteModifiers = modifiers;
+        if (text == null || text.isEmpty()) {
+            // No text on the clipboard (e.g. an image), CEF may still paste it
+            onPageMessage("nativepaste", "");
+            return;
+        }
+        CefFrame frame = this.getFocusedFrame();
+        if (frame == null) {
+            frame = this.getMainFrame();
+        }
+        if (frame != null) {
+            frame.executeJavaScript(String.format(PASTE_SCRIPT, new JsonPrimitive(text)), "", 0);
+        }
+    }
+
+    /**
+     * Mouse and text input for this browser, flushed once per frame by whoever draws it.
+     */
+    public BrowserInputQueue getInputQueue() {
+        return this.inputQueue;
+    }
+
+    /**
+     * @param usePixelBuffers stream paints through pixel buffer objects instead of uploading from client memory
+     * @param bytesPerFrame   upload budget per rendered frame, larger paints are spread over several frames (0 = unlimited)
+     */
+    public void setUploadMode(boolean usePixelBuffers, long bytesPerFrame) {
+        if (!usePixelBuffers) {
+            this.uploader.flush(this.texture);
+        }
+        this.usePixelBuffers = usePixelBuffers;
+        this.uploadBudget = Math.max(0, bytesPerFrame);
+    }
+
+    // CEF only repaints a popup when its own content changes, so keep its last frame around
+    private void keepPopupFrame(ByteBuffer buffer, int width, int height) {
+        int size = width * height * 4;
+        if (this.popupFrame == null || this.popupFrame.capacity() < size) {
+            this.popupFrame = ByteBuffer.allocateDirect(size);
+        }
+        this.popupFrame.clear();
+        ByteBuffer source = buffer.duplicate();
+        source.position(0).limit(size);
+        this.popupFrame.put(source);
+        this.popupFrame.flip();
+        this.popupFrameWidth = width;
+        this.popupFrameHeight = height;
+    }
+
+    private void uploadPopup() {
+        int w = Math.min(this.popupFrameWidth, this.texture.getContentWidth() - this.popupRect.x);
+        int h = Math.min(this.popupFrameHeight, this.texture.getContentHeight() - this.popupRect.y);
+        this.texture.upload(this.popupFrame, this.popupFrameWidth, 0, 0, this.popupRect.x, this.popupRect.y, w, h);
+        if (w > 0 && h > 0) {
+            UploadStats.recordPartial((long) w * h * 4);
+        }
+    }
+
+    @Override
+    public void onPopupShow(CefBrowser browser, boolean show) {
+        super.onPopupShow(browser, show);
+        if (!show) {
+            this.popupRect = null;
+            this.popupFrame = null;
+            // Let CEF repaint the area the popup was covering
+            this.invalidate();
+        }
+    }
+
+    @Override
+    public void onPopupSize(CefBrowser browser, Rectangle size) {
+        super.onPopupSize(browser, size);
+        // Popup bounds are in view coordinates, the texture is in painted pixels
+        double scale = this.deviceScaleFactor;
+        this.popupRect = new Rectangle(Math.max(0, (int) (size.x * scale)), Math.max(0, (int) (size.y * scale)),
+                (int) Math.ceil(size.width * scale), (int) Math.ceil(size.height * scale));
+    }
+
+    /**
+     * Set the device scale factor CEF paints with; the painted frame is the view size times this factor.
+     */
+    public void setDeviceScaleFactor(double scaleFactor) {
+        if (scaleFactor == this.deviceScaleFactor) {
+            return;
+        }
+        this.deviceScaleFactor = scaleFactor;
+        this.notifyScreenInfoChanged();
+    }
+
+    public double getDeviceScaleFactor() {
+        return this.deviceScaleFactor;
+    }
+
+    /**
+     * Set how often CEF paints this browser. CEF does not accept rates below 1.
+     */
+    public void setFrameRate(int frameRate) {
+        if (frameRate > MAX_FRAME_RATE && frameRate != cappedFrameRate) {
+            cappedFrameRate = frameRate;
+            PIPBrowser.LOGGER.warn("Browser frame rate {} is above CEF's maximum, using {}", frameRate, MAX_FRAME_RATE);
+        }
+        this.frameRate = Math.max(1, Math.min(MAX_FRAME_RATE, frameRate));
+        applyFrameRate();
+    }
+
+    private void applyFrameRate() {
+        // Without wasHidden a paused browser still paints, just as rarely as CEF allows
+        int rate = this.paintingPaused && !this.cefHidden ? 1 : this.frameRate;
+        if (rate < 1 || rate == this.appliedFrameRate) {
+            return;
+        }
+        this.appliedFrameRate = rate;
+        try {
+            this.setWindowlessFrameRate(rate);
+        } catch (Exception e) {
+            PIPBrowser.LOGGER.warn("Could not set browser frame rate: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Stop painting while nothing of the browser can be seen (e.g. it is covered by an inventory).
+     * Unlike suspension the page itself keeps running.
+     */
+    public void setPaintingPaused(boolean paused) {
+        if (paused == this.paintingPaused) {
+            return;
+        }
+        this.paintingPaused = paused;
+        updateHidden();
+        applyFrameRate();
+        if (!paused) {
+            this.invalidate();
+        }
+    }
+
+    public boolean isPaintingPaused() {
+        return this.paintingPaused;
+    }
+
+    public int getFrameRate() {
+        return this.frameRate;
+    }
+
+    /**
+     * Ask for the browser to be suspended (hidden from CEF, timers throttled) or resumed.
+     * @param exemptWhilePlaying keep running while the page plays audible media
+     */
+    public void setSuspendRequested(boolean suspend, boolean exemptWhilePlaying) {
+        this.suspendRequested = suspend;
+        this.exemptWhilePlaying = exemptWhilePlaying;
+        updateSuspended();
+    }
+
+    public boolean isSuspended() {
+        return this.suspended;
+    }
+
+    public boolean isPlayingMedia() {
+        return this.playingMedia;
+    }
+
+    private void updateSuspended() {
+        boolean suspend = this.suspendRequested && !(this.exemptWhilePlaying && this.playingMedia);
+        if (suspend == this.suspended) {
+            return;
+        }
+        this.suspended = suspend;
+        updateHidden();
+        if (!CefCompat.canHide(this)) {
+            this.executeJavaScript(suspend ? THROTTLE_SCRIPT : UNTHROTTLE_SCRIPT, "", 0);
+        }
+        if (!suspend) {
+            // Nothing was painted while hidden
+            this.invalidate();
+        }
+    }
+
+    // Suspended and paint-paused browsers are both hidden from CEF when this JCEF build allows it
+    private void updateHidden() {
+        boolean hide = this.suspended || this.paintingPaused;
+        if (hide != this.cefHidden && CefCompat.wasHidden(this, hide)) {
+            this.cefHidden = hide;
+        }
+    }
+
+    // Called by BrowserEvents when the main frame finished loading
+    void onPageLoaded() {
+        this.executeJavaScript(PAGE_PROBE_SCRIPT, "", 0);
+        if (this.pendingScrollX > 0 || this.pendingScrollY > 0) {
+            this.executeJavaScript("window.scrollTo(" + this.pendingScrollX + "," + this.pendingScrollY + ");", "", 0);
+        }
+        this.pendingScrollX = -1;
+        this.pendingScrollY = -1;
+        if (this.suspended && !CefCompat.canHide(this)) {
+            // A navigation drops the throttling we injected into the previous page
+            this.executeJavaScript(THROTTLE_SCRIPT, "", 0);
+        }
+    }
+
+    // Called by BrowserEvents for console messages sent by our page scripts
+    void onPageMessage(String key, String value) {
+        if ("media".equals(key)) {
+            this.playingMedia = "1".equals(value);
+            updateSuspended();
+        } else if ("nativepaste".equals(key)) {
+            // Nothing editable had focus, let CEF handle the shortcut and read the clipboard itself
+            this.sendKeyPress(this.pasteKeyCode, this.pasteScanCode, this.pasteModifiers);
+            this.sendKeyRelease(this.pasteKeyCode, this.pasteScanCode, this.pasteModifiers);
+        } else if ("scroll".equals(key)) {
+            int comma = value.indexOf(',');
+            try {
+                this.scrollX = Integer.parseInt(value.substring(0, comma));
+                this.scrollY = Integer.parseInt(value.substring(comma + 1));
+            } catch (RuntimeException ignored) {
+            }
+        }
+    }
+
+    // Called by BrowserEvents when the page title changes
+    void onTitleChanged(String title) {
+        this.pageState.updateAndGet(state -> state.withTitle(title));
+    }
+
+    // Called by BrowserEvents when the main frame navigates
+    void onAddressChanged(String url) {
+        this.pageState.updateAndGet(state -> state.withUrl(url));
+    }
+
+    // Called by BrowserEvents when the browser starts or stops loading
+    void onLoadingStateChanged(boolean loading) {
+        if (this.pageState.get().loading() != loading) {
+            this.pageState.updateAndGet(state -> state.withLoading(loading));
+        }
+    }
+
+    @Override
+    public boolean getScreenInfo(CefBrowser browser, CefScreenInfo screenInfo) {
+        Rectangle view = this.getViewRect(browser);
+        screenInfo.Set(this.deviceScaleFactor, 32, 8, false, view, view);
+        return true;
+    }
+
+    @Override
+    public ResourceLocation getTextureLocation() {
+        return this.texture.getLocation();
+    }
+
+    @Override
+    public boolean isTextureReady() {
+        return this.textureReady && this.texture.isAllocated();
+    }
+
+    public BrowserTexture getTexture() {
+        return this.texture;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        this.textureReady = false;
+        this.popupFrame = null;
+        this.uploader.release();
+        this.texture.release();
+    }
+}
@@ -0,0 +1,22 @@
+package com.zylr.pipbrowser.browser;
+
+/**
+ * What a browser last reported about its page. The CEF callbacks publish a new
+ * state as a whole, and {@code version} changes with every update so the
+ * render thread can skip its work while nothing changed.
+ */
+public record PageState(String url, String title, boolean loading, int version) {
+    static final PageState EMPTY = new PageState("", "", false, 0);
+
+    PageState withUrl(String url) {
+        return new PageState(url == null ? "" : url, this.title, this.loading, this.version + 1);
+    }
+
+    PageState withTitle(String title) {
+        return new PageState(this.url, title == null ? "" : title, this.loading, this.version + 1);
+    }
+
+    PageState withLoading(boolean loading) {
+        return new PageState(this.url, this.title, loading, this.version + 1);
+    }
+}
@@ -0,0 +1,183 @@
+package com.zylr.pipbrowser.browser;
+
+import com.zylr.pipbrowser.PIPBrowser;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL21;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.system.MemoryUtil;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+/**
+ * Streams CEF frames to a {@link BrowserTexture} through a ring of pixel
+ * buffer objects. The paint is copied into a mapped buffer (BGRA, as CEF
+ * delivers it) and the texture update is then sourced from that buffer, so
+ * the driver can do the transfer asynchronously. Frames larger than the
+ * per-frame budget are uploaded in row bands over several frames.
+ * <p>
+ * A frame is meant to allocate nothing on the Java heap; with debug logging on,
+ * every frame that does is logged with the bytes it allocated.
+ */
+public class PixelBufferUploader {
+    private static final int RING_SIZE = 3;
+    // Null when the JVM cannot count allocations per thread
+    private static final com.sun.management.ThreadMXBean THREADS =
+            ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                    && bean.isThreadAllocatedMemorySupported() ? bean : null;
+
+    private final int[] buffers = new int[RING_SIZE];
+    private final long[] capacities = new long[RING_SIZE];
+    private int current = -1;
+
+    // Pending regions of the current buffer: byte offset, destination, size and rows already uploaded
+    private final long[] jobOffset = new long[DirtyRegion.MAX_RECTS];
+    private final int[] jobX = new int[DirtyRegion.MAX_RECTS];
+    private final int[] jobY = new int[DirtyRegion.MAX_RECTS];
+    private final int[] jobWidth = new int[DirtyRegion.MAX_RECTS];
+    private final int[] jobHeight = new int[DirtyRegion.MAX_RECTS];
+    private final int[] jobRowsDone = new int[DirtyRegion.MAX_RECTS];
+    private int jobCount = 0;
+    private int nextJob = 0;
+
+    private ByteBuffer mapped = null;
+    // Last mapping of each buffer: LWJGL reuses the wrapper when the buffer maps to the same address and size
+    private final ByteBuffer[] mappings = new ByteBuffer[RING_SIZE];
+    private long writeOffset = 0;
+    // Thread allocation counter at begin(), -1 when not measuring
+    private long allocatedAtBegin = -1;
+
+    /**
+     * Start a frame that will hold at most {@code maxBytes}. Anything still pending from the
+     * previous frame is uploaded first so regions always land in paint order.
+     */
+    public void begin(BrowserTexture texture, long maxBytes) {
+        this.allocatedAtBegin = THREADS != null && PIPBrowser.LOGGER.isDebugEnabled()
+                ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+        flush(texture);
+        this.current = (this.current + 1) % RING_SIZE;
+        if (this.buffers[this.current] == 0) {
+            this.buffers[this.current] = GL15.glGenBuffers();
+        }
+        GL15.glBindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, this.buffers[this.current]);
+        if (this.capacities[this.current] < maxBytes) {
+            GL15.glBufferData(GL21.GL_PIXEL_UNPACK_BUFFER, maxBytes, GL15.GL_STREAM_DRAW);
+            this.capacities[this.current] = maxBytes;
+        }
+        // Invalidating lets the driver hand out fresh storage instead of waiting for the last transfer
+        this.mapped = GL30.glMapBufferRange(GL21.GL_PIXEL_UNPACK_BUFFER, 0, this.capacities[this.current],
+                GL30.GL_MAP_WRITE_BIT | GL30.GL_MAP_INVALIDATE_BUFFER_BIT, this.mappings[this.current]);
+        this.mappings[this.current] = this.mapped;
+        GL15.glBindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, 0);
+        this.writeOffset = 0;
+        this.jobCount = 0;
+        this.nextJob = 0;
+    }
+
+    /**
+     * Copy a region of the CEF frame into the mapped buffer and queue its upload.
+     * @param rowLength width in pixels of one row of {@code source}
+     */
+    public void add(ByteBuffer source, int rowLength, int x, int y, int width, int height) {
+        if (this.mapped == null || this.jobCount == this.jobOffset.length || width <= 0 || height <= 0) {
+            return;
+        }
+        long src = MemoryUtil.memAddress(source);
+        long dst = MemoryUtil.memAddress(this.mapped) + this.writeOffset;
+        long rowBytes = width * 4L;
+        if (x == 0 && width == rowLength) {
+            MemoryUtil.memCopy(src + (long) y * rowLength * 4, dst, rowBytes * height);
+        } else {
+            for (int row = 0; row < height; row++) {
+                MemoryUtil.memCopy(src + ((long) (y + row) * rowLength + x) * 4, dst + row * rowBytes, rowBytes);
+            }
+        }
+        int i = this.jobCount++;
+        this.jobOffset[i] = this.writeOffset;
+        this.jobX[i] = x;
+        this.jobY[i] = y;
+        this.jobWidth[i] = width;
+        this.jobHeight[i] = height;
+        this.jobRowsDone[i] = 0;
+        this.writeOffset += rowBytes * height;
+    }
+
+    /**
+     * Finish the frame and upload up to {@code budget} bytes of it right away.
+     */
+    public void end(BrowserTexture texture, long budget) {
+        if (this.mapped == null) {
+            return;
+        }
+        GL15.glBindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, this.buffers[this.current]);
+        GL15.glUnmapBuffer(GL21.GL_PIXEL_UNPACK_BUFFER);
+        GL15.glBindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, 0);
+        this.mapped = null;
+        drain(texture, budget);
+        if (this.allocatedAtBegin >= 0) {
+            long allocated = THREADS.getCurrentThreadAllocatedBytes() - this.allocatedAtBegin;
+            if (allocated > 0) {
+                PIPBrowser.LOGGER.debug("Pixel buffer upload allocated {} bytes in one frame", allocated);
+            }
+            this.allocatedAtBegin = -1;
+        }
+    }
+
+    public boolean hasPending() {
+        return this.nextJob < this.jobCount;
+    }
+
+    /**
+     * Upload pending rows, at most {@code budget} bytes (0 = everything). At least one band is
+     * always uploaded so a frame can never get stuck.
+     */
+    public void drain(BrowserTexture texture, long budget) {
+        if (!hasPending() || this.mapped != null) {
+            return;
+        }
+        long remaining = budget <= 0 ? Long.MAX_VALUE : budget;
+        GL15.glBindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, this.buffers[this.current]);
+        try {
+            while (hasPending() && remaining > 0) {
+                int i = this.nextJob;
+                long rowBytes = this.jobWidth[i] * 4L;
+                int rowsLeft = this.jobHeight[i] - this.jobRowsDone[i];
+                int rows = (int) Math.max(1, Math.min(rowsLeft, remaining / rowBytes));
+                texture.uploadFromPixelBuffer(this.jobOffset[i] + this.jobRowsDone[i] * rowBytes, this.jobWidth[i],
+                        this.jobX[i], this.jobY[i] + this.jobRowsDone[i], this.jobWidth[i], rows);
+                this.jobRowsDone[i] += rows;
+                remaining -= rows * rowBytes;
+                if (this.jobRowsDone[i] == this.jobHeight[i]) {
+                    this.nextJob++;
+                }
+            }
+        } finally {
+            // Vanilla uploads expect client memory, never leave our buffer bound
+            GL15.glBindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, 0);
+        }
+    }
+
+    public void flush(BrowserTexture texture) {
+        drain(texture, 0);
+    }
+
+    public void release() {
+        if (this.mapped != null && this.current >= 0) {
+            GL15.glBindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, this.buffers[this.current]);
+            GL15.glUnmapBuffer(GL21.GL_PIXEL_UNPACK_BUFFER);
+            GL15.glBindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, 0);
+            this.mapped = null;
+        }
+        for (int i = 0; i < RING_SIZE; i++) {
+            if (this.buffers[i] != 0) {
+                GL15.glDeleteBuffers(this.buffers[i]);
+                this.buffers[i] = 0;
+                this.capacities[i] = 0;
+            }
+            this.mappings[i] = null;
+        }
+        this.jobCount = 0;
+        this.nextJob = 0;
+        this.current = -1;
+    }
+}
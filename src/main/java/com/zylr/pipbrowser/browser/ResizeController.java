@@ -0,0 +1,104 @@
+package com.zylr.pipbrowser.browser;
+
+import com.zylr.pipbrowser.PIPBrowser;
+
+/**
+ * Decides when a browser actually gets resized. Every resize makes CEF reflow
+ * the page and repaint the whole frame, so requests are compared against the
+ * last applied size and held back while the user is still dragging the widget
+ * to a new size.
+ */
+public class ResizeController {
+
+    public enum State {
+        SETTLED,    // browser has the requested size
+        DRAGGING,   // user is resizing, requests are recorded but not applied
+        PENDING     // a request is waiting to be applied
+    }
+
+    private final ManagedBrowser browser;
+    private State state = State.SETTLED;
+    private int appliedWidth = -1;
+    private int appliedHeight = -1;
+    private double appliedScale = 1.0;
+    private int targetWidth = -1;
+    private int targetHeight = -1;
+    private double targetScale = 1.0;
+
+    public ResizeController(ManagedBrowser browser) {
+        this.browser = browser;
+    }
+
+    /**
+     * Request a view size in CSS pixels painted at the given device scale factor.
+     */
+    public void request(int width, int height, double scaleFactor) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        this.targetWidth = width;
+        this.targetHeight = height;
+        this.targetScale = scaleFactor;
+        if (this.state == State.DRAGGING) {
+            return;
+        }
+        this.state = isApplied() ? State.SETTLED : State.PENDING;
+        apply();
+    }
+
+    /**
+     * Request an exact pixel size, used where browser pixels map 1:1 to the screen (fullscreen).
+     */
+    public void requestExact(int width, int height) {
+        request(width, height, 1.0);
+    }
+
+    public void beginDrag() {
+        this.state = State.DRAGGING;
+    }
+
+    public void endDrag() {
+        if (this.state != State.DRAGGING) {
+            return;
+        }
+        this.state = State.PENDING;
+        apply();
+    }
+
+    public State getState() {
+        return this.state;
+    }
+
+    public int getAppliedWidth() {
+        return this.appliedWidth;
+    }
+
+    public int getAppliedHeight() {
+        return this.appliedHeight;
+    }
+
+    private boolean isApplied() {
+        return this.targetWidth == this.appliedWidth && this.targetHeight == this.appliedHeight
+                && this.targetScale == this.appliedScale;
+    }
+
+    private void apply() {
+        if (this.state != State.PENDING || this.targetWidth <= 0 || this.targetHeight <= 0) {
+            return;
+        }
+        if (!isApplied()) {
+            try {
+                // Scale factor first so the resize repaints at the new density in one go
+                this.browser.setDeviceScaleFactor(this.targetScale);
+                this.browser.resize(this.targetWidth, this.targetHeight);
+                this.appliedWidth = this.targetWidth;
+                this.appliedHeight = this.targetHeight;
+                this.appliedScale = this.targetScale;
+            } catch (Exception e) {
+                PIPBrowser.LOGGER.warn("Could not resize browser: {}", e.getMessage());
+                return;
+            }
+        }
+        this.state = State.SETTLED;
+    }
+}
@@ -0,0 +1,101 @@
+package com.zylr.pipbrowser.browser;
+
+import java.util.Properties;
+
+/**
+ * Picks the browser resolution from the number of framebuffer pixels the
+ * widget actually covers. The page is laid out at (at least) a desktop CSS
+ * width and CEF's device scale factor shrinks it down to the painted size,
+ * so a small PiP keeps the desktop layout while painting far fewer pixels.
+ */
+public class ResolutionGovernor {
+    // Texture widths are rounded up to this many pixels so small size jitter never triggers a reflow
+    public static final int BUCKET = 32;
+    // Below this the page text becomes unreadable no matter how large the layout is
+    private static final double MIN_SCALE_FACTOR = 0.25;
+
+    public static final double DEFAULT_OVERSAMPLING = 1.0;
+    public static final int DEFAULT_MIN_WIDTH = 320;
+    public static final int DEFAULT_MAX_WIDTH = 1920;
+    public static final int DEFAULT_LAYOUT_WIDTH = 1280;
+
+    private double oversampling = DEFAULT_OVERSAMPLING;
+    private int minWidth = DEFAULT_MIN_WIDTH;
+    private int maxWidth = DEFAULT_MAX_WIDTH;
+    private int layoutWidth = DEFAULT_LAYOUT_WIDTH;
+
+    // Result of the last compute() call
+    private int viewWidth;
+    private int viewHeight;
+    private double scaleFactor = 1.0;
+
+    /**
+     * Read caps from a widget config, keeping the defaults for missing keys.
+     */
+    public void configure(Properties config) {
+        if (config == null) {
+            return;
+        }
+        this.oversampling = Math.max(0.1, parseDouble(config.getProperty("oversampling"), DEFAULT_OVERSAMPLING));
+        this.minWidth = Math.max(BUCKET, parseInt(config.getProperty("minResolution"), DEFAULT_MIN_WIDTH));
+        this.maxWidth = Math.max(this.minWidth, parseInt(config.getProperty("maxResolution"), DEFAULT_MAX_WIDTH));
+        this.layoutWidth = Math.max(0, parseInt(config.getProperty("layoutWidth"), DEFAULT_LAYOUT_WIDTH));
+    }
+
+    /**
+     * Compute the browser size for a widget area.
+     * @param guiWidth  width of the browser area in GUI units
+     * @param guiHeight height of the browser area in GUI units
+     * @param guiScale  current GUI scale (framebuffer pixels per GUI unit)
+     */
+    public void compute(int guiWidth, int guiHeight, double guiScale) {
+        if (guiWidth <= 0 || guiHeight <= 0) {
+            return;
+        }
+        double framebufferWidth = guiWidth * guiScale;
+        int pixelWidth = (int) Math.round(framebufferWidth * this.oversampling);
+        pixelWidth = Math.max(this.minWidth, Math.min(this.maxWidth, pixelWidth));
+        pixelWidth = (pixelWidth + BUCKET - 1) / BUCKET * BUCKET;
+        int pixelHeight = Math.max(1, (int) Math.round(pixelWidth * (guiHeight / (double) guiWidth)));
+
+        // Lay the page out at least at desktop width and let the scale factor shrink it
+        double scale = 1.0;
+        if (this.layoutWidth > pixelWidth) {
+            scale = Math.max(MIN_SCALE_FACTOR, pixelWidth / (double) this.layoutWidth);
+        }
+        this.scaleFactor = scale;
+        this.viewWidth = Math.max(1, (int) Math.round(pixelWidth / scale));
+        this.viewHeight = Math.max(1, (int) Math.round(pixelHeight / scale));
+    }
+
+    // Size of the CEF view in CSS pixels
+    public int getViewWidth() {
+        return this.viewWidth;
+    }
+
+    public int getViewHeight() {
+        return this.viewHeight;
+    }
+
+    public double getScaleFactor() {
+        return this.scaleFactor;
+    }
+
+    private static double parseDouble(String value, double fallback) {
+        if (value == null) return fallback;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static int parseInt(String value, int fallback) {
+        if (value == null) return fallback;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.zylr.pipbrowser.browser;
+
+import com.zylr.pipbrowser.PIPBrowser;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the bytes uploaded from CEF paints into browser textures, so the
+ * effect of partial uploads can be checked (enable debug logging for
+ * com.zylr.pipbrowser to get a line per second).
+ */
+public class UploadStats {
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+
+    private static final AtomicLong currentBytes = new AtomicLong();
+    private static final AtomicLong fullUploads = new AtomicLong();
+    private static final AtomicLong partialUploads = new AtomicLong();
+    private static volatile long windowStart = System.nanoTime();
+    private static volatile long bytesPerSecond = 0;
+
+    public static void recordFull(long bytes) {
+        fullUploads.incrementAndGet();
+        record(bytes);
+    }
+
+    public static void recordPartial(long bytes) {
+        partialUploads.incrementAndGet();
+        record(bytes);
+    }
+
+    private static void record(long bytes) {
+        currentBytes.addAndGet(bytes);
+        roll();
+    }
+
+    /**
+     * Bytes uploaded during the last complete second.
+     */
+    public static long getBytesPerSecond() {
+        roll();
+        return bytesPerSecond;
+    }
+
+    public static long getFullUploads() {
+        return fullUploads.get();
+    }
+
+    public static long getPartialUploads() {
+        return partialUploads.get();
+    }
+
+    private static void roll() {
+        long now = System.nanoTime();
+        if (now - windowStart < WINDOW_NANOS) {
+            return;
+        }
+        // Paints arrive on the render thread, so the window is only rolled from one thread
+        long elapsed = now - windowStart;
+        windowStart = now;
+        long bytes = currentBytes.getAndSet(0);
+        bytesPerSecond = elapsed >= 2 * WINDOW_NANOS ? 0 : bytes;
+        if (bytes > 0) {
+            PIPBrowser.LOGGER.debug("Browser texture uploads: {} KiB/s ({} full, {} partial in total)",
+                    bytes / 1024, fullUploads.get(), partialUploads.get());
+        }
+    }
+}
@@ -7,7 +7,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class Hud {
+    // Drawing order, bottom first
     public List<IWidget> widgets;
+    // Bumped whenever the widget list changes
+    protected int version = 0;
 
     public Hud() {
         this.widgets = new ArrayList<>();
@@ -16,4 +19,8 @@ public class Hud {
     public void fillHudList() {
 
     }
+
+    public int getVersion() {
+        return this.version;
+    }
 }
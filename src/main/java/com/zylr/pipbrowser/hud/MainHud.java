@@ -1,6 +1,5 @@
 package com.zylr.pipbrowser.hud;
 
-import com.zylr.pipbrowser.Config;
 import com.zylr.pipbrowser.widgets.BrowserWidget;
 
 public class MainHud extends Hud {
@@ -16,7 +15,10 @@ public class MainHud extends Hud {
     @Override
     public void fillHudList() {
         this.widgets.clear();
-        this.widgets.add(browserWidget);
+        if (browserWidget != null) {
+            this.widgets.add(browserWidget);
+        }
+        this.version++;
     }
 
     public BrowserWidget getBrowserWidget() { return this.browserWidget; }
@@ -0,0 +1,153 @@
+package com.zylr.pipbrowser.listeners;
+
+import com.zylr.pipbrowser.PIPBrowser;
+import com.zylr.pipbrowser.browser.BrowserManager;
+import com.zylr.pipbrowser.screens.BrowserScreen;
+import com.zylr.pipbrowser.widgets.BrowserWidget;
+import net.minecraft.client.Minecraft;
+
+import java.net.URI;
+import java.util.Locale;
+
+/**
+ * Decides where a confirmed link opens, so one click loads the page at most once:
+ * a tab already on that page is just shown, an idle or unchanged tab on the same
+ * site navigates, with no tabs at all the HUD browser navigates, and only otherwise
+ * a new tab (one browser) is created.
+ */
+public class LinkRouter {
+    // A second press for the same link within this time is the same click (e.g. proxy and button both firing)
+    private static final long DUPLICATE_NANOS = 1_000_000_000L;
+
+    private static String lastUrl;
+    private static long lastOpened = 0;
+
+    private enum Target {
+        SAME_PAGE,
+        SAME_ORIGIN,
+        HUD,
+        NEW_TAB
+    }
+
+    /**
+     * Open {@code url} in the in-game browser, closing the current screen.
+     */
+    public static void open(String url) {
+        if (url == null || !(url.startsWith("http://") || url.startsWith("https://"))) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (url.equals(lastUrl) && now - lastOpened < DUPLICATE_NANOS) {
+            return;
+        }
+        lastUrl = url;
+        lastOpened = now;
+
+        Minecraft minecraft = Minecraft.getInstance();
+        String page = normalize(url);
+        String origin = origin(url);
+        BrowserWidget hudWidget = PIPBrowser.getInstance().mainHud.getBrowserWidget();
+
+        Target target;
+        int tab = BrowserScreen.findTab(widget -> page.equals(normalize(widget.getPageUrl())));
+        if (tab >= 0) {
+            target = Target.SAME_PAGE;
+        } else if (origin != null && (tab = BrowserScreen.findTab(widget ->
+                origin.equals(origin(widget.getPageUrl())) && isReplaceable(widget))) >= 0) {
+            target = Target.SAME_ORIGIN;
+        } else if (!BrowserScreen.hasTabs() && hudWidget != null) {
+            target = Target.HUD;
+        } else {
+            target = Target.NEW_TAB;
+        }
+        PIPBrowser.LOGGER.debug("Opening link {} in {}", url, target);
+
+        BrowserScreen screen;
+        switch (target) {
+            case SAME_PAGE -> {
+                BrowserScreen.selectTab(tab);
+                screen = new BrowserScreen();
+            }
+            case SAME_ORIGIN -> {
+                navigate(BrowserScreen.getTabWidget(tab), url);
+                BrowserScreen.selectTab(tab);
+                screen = new BrowserScreen();
+            }
+            case HUD -> {
+                // With no tabs the screen opens on the HUD browser
+                if (!page.equals(normalize(hudWidget.getPageUrl()))) {
+                    navigate(hudWidget, url);
+                }
+                screen = new BrowserScreen();
+            }
+            default -> {
+                // A new tab, or the first one (which also becomes the HUD browser)
+                BrowserManager.claimPreload(url);
+                screen = new BrowserScreen(url);
+            }
+        }
+        minecraft.setScreen(null);
+        minecraft.setScreen(screen);
+    }
+
+    /**
+     * A same-site tab may be taken over only if navigating it away loses nothing the player is
+     * using: it is idle (no media playing, not loading), or it is still on the page it was opened
+     * with and not playing anything, so at most a load of that page is cut short. Its history keeps
+     * the old page, so Back returns to it. A tab playing media or one the player browsed on from
+     * and that is still loading gets a new tab instead.
+     */
+    private static boolean isReplaceable(BrowserWidget widget) {
+        if (widget.isIdle()) {
+            return true;
+        }
+        return !widget.isPlayingMedia() && normalize(widget.getOpenedUrl()).equals(normalize(widget.getPageUrl()));
+    }
+
+    private static void navigate(BrowserWidget widget, String url) {
+        if (!widget.isInitialized()) {
+            // The widget creates its browser at the new page, which can be the preloaded one
+            BrowserManager.claimPreload(url);
+        }
+        widget.navigate(url);
+    }
+
+    // Same page: ignore the fragment, a trailing slash and the case of scheme and host
+    private static String normalize(String url) {
+        if (url == null) {
+            return "";
+        }
+        int hash = url.indexOf('#');
+        String page = hash >= 0 ? url.substring(0, hash) : url;
+        if (page.endsWith("/")) {
+            page = page.substring(0, page.length() - 1);
+        }
+        String origin = origin(page);
+        if (origin != null) {
+            // Path and query after the host keep their case
+            int rest = page.indexOf("://") + 3;
+            while (rest < page.length() && page.charAt(rest) != '/' && page.charAt(rest) != '?') {
+                rest++;
+            }
+            page = origin + page.substring(rest);
+        }
+        return page;
+    }
+
+    // scheme://host[:port], null for anything that is not http(s)
+    private static String origin(String url) {
+        if (url == null || !(url.startsWith("http://") || url.startsWith("https://"))) {
+            return null;
+        }
+        try {
+            URI uri = new URI(url);
+            if (uri.getHost() == null) {
+                return null;
+            }
+            String origin = uri.getScheme().toLowerCase(Locale.ROOT) + "://" + uri.getHost().toLowerCase(Locale.ROOT);
+            return uri.getPort() >= 0 ? origin + ":" + uri.getPort() : origin;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -1,10 +1,9 @@
 package com.zylr.pipbrowser.listeners;
 
 import com.zylr.pipbrowser.PIPBrowser;
+import com.zylr.pipbrowser.browser.BrowserManager;
 import com.zylr.pipbrowser.screens.BrowserScreen;
-import com.zylr.pipbrowser.widgets.BrowserWidget;
 import net.fabricmc.fabric.api.client.screen.v1.ScreenEvents;
-import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.components.Button;
 import net.minecraft.client.gui.screens.ConfirmLinkScreen;
 import net.minecraft.client.gui.screens.Screen;
@@ -83,6 +82,14 @@ public class LinkScreenListener {
             if (screen instanceof ConfirmLinkScreen && capturedUrl.get() != null) {
                 String url = capturedUrl.get();
 
+                // Start loading the page while the dialog is read, at the size the browser screen will show it.
+                // Closed again when the dialog goes away without the link being opened.
+                double guiScale = client.getWindow().getGuiScale();
+                BrowserManager.preload(url,
+                        (int) ((scaledWidth - BrowserScreen.BROWSER_DRAW_LEFT - BrowserScreen.BROWSER_DRAW_RIGHT) * guiScale),
+                        (int) ((scaledHeight - BrowserScreen.BROWSER_DRAW_TOP - BrowserScreen.BROWSER_DRAW_BOTTOM) * guiScale));
+                ScreenEvents.remove(screen).register(removed -> BrowserManager.releasePreload());
+
                 // Do not auto-open: let the ConfirmLinkScreen appear and inject our button into it.
                 // capturedUrl will be cleared after we either inject or handle the user's action.
 
@@ -143,16 +150,8 @@ public class LinkScreenListener {
 
                         Button newYesButton = Button.builder(CommonComponents.GUI_YES, (button) -> {
                             if (url != null && (url.startsWith("http://") || url.startsWith("https://"))) {
-                                Minecraft minecraft = Minecraft.getInstance();
-
-                                if (PIPBrowser.getInstance().mainHud.getBrowserWidget() == null) {
-                                    PIPBrowser.getInstance().mainHud.setBrowserWidget(new BrowserWidget(0, 0, 267, 150, url));
-                                    PIPBrowser.getInstance().mainHud.fillHudList();
-                                }
-
-                                // Open the BrowserScreen with the URL, which will create a new tab
-                                minecraft.setScreen(null);
-                                minecraft.setScreen(new BrowserScreen(url));
+                                // Opens the BrowserScreen on the tab the router picks for the URL
+                                LinkRouter.open(url);
                             } else {
                                 client.setScreen(null);
                             }
@@ -356,15 +355,7 @@ public class LinkScreenListener {
                      Object proxy = Proxy.newProxyInstance(ft.getClassLoader(), new Class[]{ft}, (InvocationHandler) (p, method, args) -> {
                          // When pressed, open internal browser
                          try {
-                             if (url != null && (url.startsWith("http://") || url.startsWith("https://"))) {
-                                 Minecraft minecraft = Minecraft.getInstance();
-                                 if (PIPBrowser.getInstance().mainHud.getBrowserWidget() == null) {
-                                     PIPBrowser.getInstance().mainHud.setBrowserWidget(new BrowserWidget(0, 0, 267, 150, url));
-                                     PIPBrowser.getInstance().mainHud.fillHudList();
-                                 }
-                                 minecraft.setScreen(null);
-                                 minecraft.setScreen(new BrowserScreen(url));
-                             }
+                             LinkRouter.open(url);
                          } catch (Throwable t) {
                              // patched action failed; ignore and continue
                          }
@@ -0,0 +1,277 @@
+package com.zylr.pipbrowser.listeners;
+
+import com.zylr.pipbrowser.PIPBrowser;
+import com.zylr.pipbrowser.hud.MainHud;
+import com.zylr.pipbrowser.screens.ColorPickerScreen;
+import com.zylr.pipbrowser.widgets.BrowserWidget;
+import com.zylr.pipbrowser.widgets.IWidget;
+import com.zylr.pipbrowser.widgets.Widget;
+import com.mojang.blaze3d.platform.Window;
+import net.minecraft.client.Minecraft;
+import org.lwjgl.glfw.GLFW;
+
+import java.util.List;
+
+/**
+ * Routes mouse events of an inventory (AbstractContainerScreen) to the HUD widgets,
+ * so browsers become draggable (left-drag), resizable (right-drag) and clickable
+ * (short left-press) without opening the HUD edit screen. Middle click opens the
+ * color picker. Driven by the screen's own mouse events (see AbstractContainerScreenMixin),
+ * so nothing runs while the mouse is not pressed on a widget.
+ */
+public class WidgetInputRouter {
+    private static final double DRAG_THRESHOLD = 3.0; // GUI units before a press becomes a drag
+    private static final int MIN_SIZE = 20;
+
+    private enum State {
+        IDLE,
+        PRESSED,    // left down on a widget, still a click
+        DRAGGING,   // left down and moved past the threshold
+        RESIZING    // right down on a widget
+    }
+
+    private static final WidgetInputRouter INSTANCE = new WidgetInputRouter();
+
+    private State state = State.IDLE;
+    private IWidget target = null;
+    private double pressX = 0;
+    private double pressY = 0;
+    private double dragOffsetX = 0;
+    private double dragOffsetY = 0;
+    private int resizeStartWidth = 0;
+    private int resizeStartHeight = 0;
+
+    // Hit-test snapshot, topmost widget first; rebuilt when the widget list or any layout changes
+    private IWidget[] hitWidgets = new IWidget[0];
+    private int[] hitRects = new int[0];
+    private int hitHudVersion = -1;
+    private int hitLayoutVersion = -1;
+
+    public static WidgetInputRouter getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param coverX, coverY, coverWidth, coverHeight the container panel, which keeps its own clicks
+     * @return true if the press landed on a widget and the screen should not see it
+     */
+    public boolean mouseClicked(double mouseX, double mouseY, int button,
+                                int coverX, int coverY, int coverWidth, int coverHeight) {
+        if (this.state != State.IDLE) {
+            return true;
+        }
+        if (mouseX >= coverX && mouseX < coverX + coverWidth && mouseY >= coverY && mouseY < coverY + coverHeight) {
+            return false;
+        }
+        IWidget widget = hitTest(mouseX, mouseY);
+        if (widget == null) {
+            return false;
+        }
+
+        switch (button) {
+            case GLFW.GLFW_MOUSE_BUTTON_LEFT -> {
+                this.state = State.PRESSED;
+                this.target = widget;
+                this.pressX = mouseX;
+                this.pressY = mouseY;
+            }
+            case GLFW.GLFW_MOUSE_BUTTON_RIGHT -> {
+                this.state = State.RESIZING;
+                this.target = widget;
+                this.pressX = mouseX;
+                this.pressY = mouseY;
+                this.resizeStartWidth = widget.getWidgetWidth();
+                this.resizeStartHeight = widget.getWidgetHeight();
+                if (widget instanceof BrowserWidget browser) {
+                    // Hold the CEF resolution until the drag ends
+                    browser.beginInteractiveResize();
+                }
+            }
+            case GLFW.GLFW_MOUSE_BUTTON_MIDDLE -> {
+                if (widget instanceof Widget w) {
+                    // Pass the current screen as parent so the picker returns to it
+                    Minecraft mc = Minecraft.getInstance();
+                    mc.setScreen(new ColorPickerScreen(w, mc.screen));
+                }
+            }
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean mouseDragged(double mouseX, double mouseY, int button) {
+        switch (this.state) {
+            case PRESSED -> {
+                if (button != GLFW.GLFW_MOUSE_BUTTON_LEFT) {
+                    return true;
+                }
+                if (Math.abs(mouseX - this.pressX) < DRAG_THRESHOLD && Math.abs(mouseY - this.pressY) < DRAG_THRESHOLD) {
+                    return true;
+                }
+                this.state = State.DRAGGING;
+                this.dragOffsetX = this.target.getAnchorX() - this.pressX;
+                this.dragOffsetY = this.target.getAnchorY() - this.pressY;
+                move(mouseX, mouseY);
+                return true;
+            }
+            case DRAGGING -> {
+                if (button == GLFW.GLFW_MOUSE_BUTTON_LEFT) {
+                    move(mouseX, mouseY);
+                }
+                return true;
+            }
+            case RESIZING -> {
+                if (button == GLFW.GLFW_MOUSE_BUTTON_RIGHT) {
+                    resize(mouseX, mouseY);
+                }
+                return true;
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    public boolean mouseReleased(double mouseX, double mouseY, int button) {
+        switch (this.state) {
+            case PRESSED -> {
+                if (button != GLFW.GLFW_MOUSE_BUTTON_LEFT) {
+                    return true;
+                }
+                if (this.target instanceof BrowserWidget browser) {
+                    browser.mouseClicked(mouseX, mouseY, GLFW.GLFW_MOUSE_BUTTON_LEFT);
+                }
+                reset();
+                return true;
+            }
+            case DRAGGING -> {
+                if (button != GLFW.GLFW_MOUSE_BUTTON_LEFT) {
+                    return true;
+                }
+                try {
+                    if (this.target.getConfig() != null) {
+                        this.target.getConfig().setProperty("x", this.target.getRelativeAnchorX() + "");
+                        this.target.getConfig().setProperty("y", this.target.getRelativeAnchorY() + "");
+                        this.target.saveConfig();
+                    }
+                } catch (Exception e) {
+                    PIPBrowser.LOGGER.warn("Failed to save widget position: {}", e.getMessage());
+                }
+                reset();
+                return true;
+            }
+            case RESIZING -> {
+                if (button != GLFW.GLFW_MOUSE_BUTTON_RIGHT) {
+                    return true;
+                }
+                try {
+                    if (this.target.getConfig() != null) {
+                        this.target.getConfig().setProperty("width", Double.toString(this.target.getWidthPercent()));
+                        this.target.getConfig().setProperty("height", Double.toString(this.target.getHeightPercent()));
+                        this.target.saveConfig();
+                    }
+                } catch (Exception e) {
+                    PIPBrowser.LOGGER.warn("Failed to save widget size: {}", e.getMessage());
+                }
+                if (this.target instanceof BrowserWidget browser) {
+                    browser.endInteractiveResize();
+                }
+                reset();
+                return true;
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Drop any gesture in progress, e.g. when the screen closes before the button is released.
+     */
+    public void cancel() {
+        if (this.state == State.RESIZING && this.target instanceof BrowserWidget browser) {
+            browser.endInteractiveResize();
+        }
+        reset();
+    }
+
+    private void reset() {
+        this.state = State.IDLE;
+        this.target = null;
+    }
+
+    private void move(double mouseX, double mouseY) {
+        this.target.setRelativeX((int) (mouseX + this.dragOffsetX));
+        this.target.setRelativeY((int) (mouseY + this.dragOffsetY));
+    }
+
+    private void resize(double mouseX, double mouseY) {
+        Window window = Minecraft.getInstance().getWindow();
+        int guiWidth = window.getGuiScaledWidth();
+        int guiHeight = window.getGuiScaledHeight();
+        int newWidth = Math.max(MIN_SIZE, this.resizeStartWidth + (int) (mouseX - this.pressX));
+        int newHeight = Math.max(MIN_SIZE, this.resizeStartHeight + (int) (mouseY - this.pressY));
+
+        // Never grow past the window edge, measured from the (on screen) anchor
+        int anchorX = Math.max(0, Math.min(this.target.getAnchorX(), guiWidth));
+        int anchorY = Math.max(0, Math.min(this.target.getAnchorY(), guiHeight));
+        newWidth = Math.min(newWidth, Math.max(MIN_SIZE, guiWidth - anchorX));
+        newHeight = Math.min(newHeight, Math.max(MIN_SIZE, guiHeight - anchorY));
+
+        if (this.target instanceof Widget w) {
+            w.setWidgetWidth(newWidth);
+            w.setWidgetHeight(newHeight);
+            w.setWidthPercent(newWidth / (double) guiWidth);
+            w.setHeightPercent(newHeight / (double) guiHeight);
+        }
+    }
+
+    private IWidget hitTest(double mouseX, double mouseY) {
+        PIPBrowser mod = PIPBrowser.getInstance();
+        if (mod == null || mod.mainHud == null) {
+            return null;
+        }
+        MainHud hud = mod.mainHud;
+        if (hud.getVersion() != this.hitHudVersion || Widget.getLayoutVersion() != this.hitLayoutVersion) {
+            rebuildHitTest(hud.widgets);
+            this.hitHudVersion = hud.getVersion();
+            this.hitLayoutVersion = Widget.getLayoutVersion();
+        }
+        for (int i = 0; i < this.hitWidgets.length; i++) {
+            int r = i * 4;
+            if (mouseX > this.hitRects[r] && mouseX < this.hitRects[r + 2]
+                    && mouseY > this.hitRects[r + 1] && mouseY < this.hitRects[r + 3]
+                    && this.hitWidgets[i].isVisible()) {
+                return this.hitWidgets[i];
+            }
+        }
+        return null;
+    }
+
+    // The list is drawn bottom first, so walk it backwards to put the topmost widget first
+    private void rebuildHitTest(List<IWidget> widgets) {
+        int count = 0;
+        for (IWidget widget : widgets) {
+            if (widget != null) {
+                count++;
+            }
+        }
+        this.hitWidgets = new IWidget[count];
+        this.hitRects = new int[count * 4];
+        int i = 0;
+        for (int w = widgets.size() - 1; w >= 0; w--) {
+            IWidget widget = widgets.get(w);
+            if (widget == null) {
+                continue;
+            }
+            this.hitWidgets[i] = widget;
+            this.hitRects[i * 4] = widget.getLeftSide();
+            this.hitRects[i * 4 + 1] = widget.getTop();
+            this.hitRects[i * 4 + 2] = widget.getRightSide();
+            this.hitRects[i * 4 + 3] = widget.getBottom();
+            i++;
+        }
+    }
+}
@@ -3,15 +3,18 @@ package com.zylr.pipbrowser.mixin;
 import com.mojang.blaze3d.platform.InputConstants;
 import com.zylr.pipbrowser.Controls;
 import com.zylr.pipbrowser.PIPBrowser;
+import com.zylr.pipbrowser.listeners.WidgetInputRouter;
 import com.zylr.pipbrowser.widgets.BrowserWidget;
 import com.zylr.pipbrowser.widgets.IWidget;
 import net.minecraft.client.KeyMapping;
 import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.gui.screens.inventory.AbstractContainerScreen;
 import net.minecraft.client.input.KeyEvent;
+import net.minecraft.client.input.MouseButtonEvent;
 import net.minecraft.resources.ResourceLocation;
 import org.lwjgl.glfw.GLFW;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
@@ -19,6 +22,10 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 @Mixin(AbstractContainerScreen.class)
 public class AbstractContainerScreenMixin {
+    @Shadow protected int leftPos;
+    @Shadow protected int topPos;
+    @Shadow protected int imageWidth;
+    @Shadow protected int imageHeight;
 
     @Inject(method = "renderBackground", at = @At(value = "INVOKE", target = "Lnet/minecraft/client/gui/screens/Screen;renderBackground(Lnet/minecraft/client/gui/GuiGraphics;IIF)V", shift = At.Shift.AFTER))
     private void renderBrowserWidgetBetweenBackgroundAndBg(GuiGraphics guiGraphics, int i, int j, float f, CallbackInfo ci) {
@@ -28,7 +35,8 @@ public class AbstractContainerScreenMixin {
             if (PIPBrowser.getInstance() != null && PIPBrowser.getInstance().mainHud != null) {
                 for (IWidget widget : PIPBrowser.getInstance().mainHud.widgets) {
                     if (widget instanceof BrowserWidget browser) {
-                        browser.render(guiGraphics);
+                        // The container background is drawn over the widget, skip it when it hides everything
+                        browser.renderBelow(guiGraphics, leftPos, topPos, imageWidth, imageHeight);
                     }
                 }
             }
@@ -37,6 +45,33 @@ public class AbstractContainerScreenMixin {
         }
     }
 
+    // Presses on a HUD widget outside the container panel move, resize or click the widget instead
+    @Inject(method = "mouseClicked", at = @At("HEAD"), cancellable = true)
+    private void routeWidgetMouseClicked(MouseButtonEvent event, boolean doubleClick, CallbackInfoReturnable<Boolean> cir) {
+        if (WidgetInputRouter.getInstance().mouseClicked(event.x(), event.y(), event.button(), leftPos, topPos, imageWidth, imageHeight)) {
+            cir.setReturnValue(true);
+        }
+    }
+
+    @Inject(method = "mouseDragged", at = @At("HEAD"), cancellable = true)
+    private void routeWidgetMouseDragged(MouseButtonEvent event, double dragX, double dragY, CallbackInfoReturnable<Boolean> cir) {
+        if (WidgetInputRouter.getInstance().mouseDragged(event.x(), event.y(), event.button())) {
+            cir.setReturnValue(true);
+        }
+    }
+
+    @Inject(method = "mouseReleased", at = @At("HEAD"), cancellable = true)
+    private void routeWidgetMouseReleased(MouseButtonEvent event, CallbackInfoReturnable<Boolean> cir) {
+        if (WidgetInputRouter.getInstance().mouseReleased(event.x(), event.y(), event.button())) {
+            cir.setReturnValue(true);
+        }
+    }
+
+    @Inject(method = "removed", at = @At("HEAD"))
+    private void cancelWidgetGesture(CallbackInfo ci) {
+        WidgetInputRouter.getInstance().cancel();
+    }
+
     @Inject(method = "keyPressed", at = @At(value = "HEAD"))
     private void sendUpKeyPress(KeyEvent keyEvent, CallbackInfoReturnable<Boolean> cir) {
         if (Controls.UP_KEY.matches(keyEvent)) {
@@ -0,0 +1,18 @@
+package com.zylr.pipbrowser.mixin;
+
+import com.zylr.pipbrowser.render.FrameCounter;
+import net.minecraft.client.DeltaTracker;
+import net.minecraft.client.renderer.GameRenderer;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(GameRenderer.class)
+public class GameRendererMixin {
+
+    @Inject(method = "render", at = @At("HEAD"))
+    private void countFrame(DeltaTracker deltaTracker, boolean renderLevel, CallbackInfo ci) {
+        FrameCounter.nextFrame();
+    }
+}
@@ -0,0 +1,15 @@
+package com.zylr.pipbrowser.mixin;
+
+import net.minecraft.client.gui.GuiGraphics;
+import net.minecraft.client.gui.render.state.GuiRenderState;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+/**
+ * Gives access to the GUI render state so custom render states can be submitted.
+ */
+@Mixin(GuiGraphics.class)
+public interface GuiGraphicsAccessor {
+    @Accessor("guiRenderState")
+    GuiRenderState getGuiRenderState();
+}
@@ -0,0 +1,187 @@
+package com.zylr.pipbrowser.properties;
+
+import com.zylr.pipbrowser.PIPBrowser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * One properties file, parsed once and kept in memory. Reads go to an
+ * immutable snapshot that is swapped as a whole (copy-on-write) when the file
+ * is saved or edited on disk, so they never lock and never touch the disk.
+ * Use {@link #copy()} for a private, mutable copy and {@link #save(Properties)}
+ * to publish it; the file itself is written in the background by {@link ConfigWriter}.
+ */
+public class ConfigFile {
+    // Modify events that arrive this soon after our own write are our own write
+    private static final long OWN_WRITE_NANOS = 500_000_000L;
+
+    private final Path path;
+    private final String defaultResource;
+    private volatile Properties snapshot;
+    private volatile int version = 0;
+    private volatile long lastWriteNanos = 0;
+
+    ConfigFile(Path path, String defaultResource) {
+        this.path = path;
+        this.defaultResource = defaultResource;
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    /**
+     * Changes every time the snapshot is replaced, by a save or by an edit on disk.
+     */
+    public int getVersion() {
+        return this.version;
+    }
+
+    // Never modify the returned object, it is shared by every reader
+    private Properties snapshot() {
+        Properties current = this.snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = this.snapshot;
+                if (current == null) {
+                    current = load();
+                    this.snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    public String get(String key, String fallback) {
+        return snapshot().getProperty(key, fallback);
+    }
+
+    public boolean getBoolean(String key, boolean fallback) {
+        String value = snapshot().getProperty(key);
+        return value == null ? fallback : Boolean.parseBoolean(value.trim());
+    }
+
+    public int getInt(String key, int fallback) {
+        String value = snapshot().getProperty(key);
+        if (value == null) return fallback;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    public long getLong(String key, long fallback) {
+        String value = snapshot().getProperty(key);
+        if (value == null) return fallback;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    public double getDouble(String key, double fallback) {
+        String value = snapshot().getProperty(key);
+        if (value == null) return fallback;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * A mutable copy of the current values.
+     */
+    public Properties copy() {
+        Properties copy = new Properties();
+        copy.putAll(snapshot());
+        return copy;
+    }
+
+    /**
+     * Publish new values; they reach the disk shortly after, without blocking the caller.
+     */
+    public void save(Properties values) {
+        Properties published = new Properties();
+        published.putAll(values);
+        synchronized (this) {
+            this.snapshot = published;
+            this.version++;
+        }
+        ConfigWriter.submit(this, published);
+    }
+
+    /**
+     * Replace the file with the bundled defaults.
+     */
+    public void reset() {
+        save(loadDefaults());
+    }
+
+    /**
+     * Re-read the file after it changed on disk. Does nothing if the contents are what we already have.
+     */
+    void reload() {
+        // The snapshot is newer than the file while a write is pending
+        if (ConfigWriter.isPending(this) || System.nanoTime() - this.lastWriteNanos < OWN_WRITE_NANOS) {
+            return;
+        }
+        synchronized (this) {
+            Properties loaded = read();
+            if (loaded == null || loaded.equals(this.snapshot)) {
+                return;
+            }
+            this.snapshot = loaded;
+            this.version++;
+        }
+        PIPBrowser.LOGGER.info("Reloaded {}", this.path);
+    }
+
+    private Properties load() {
+        if (!Files.exists(this.path)) {
+            Properties defaults = loadDefaults();
+            ConfigWriter.submit(this, defaults);
+            PIPBrowser.LOGGER.info("Created default config file at {}", this.path);
+            return defaults;
+        }
+        Properties loaded = read();
+        return loaded != null ? loaded : new Properties();
+    }
+
+    private Properties read() {
+        try (InputStream input = Files.newInputStream(this.path)) {
+            Properties properties = new Properties();
+            properties.load(input);
+            return properties;
+        } catch (IOException e) {
+            PIPBrowser.LOGGER.warn("Could not read {}: {}", this.path, e.getMessage());
+            return null;
+        }
+    }
+
+    private Properties loadDefaults() {
+        Properties defaults = new Properties();
+        if (this.defaultResource == null) {
+            return defaults;
+        }
+        try (InputStream input = ConfigFile.class.getClassLoader().getResourceAsStream(this.defaultResource)) {
+            if (input != null) {
+                defaults.load(input);
+            }
+        } catch (IOException e) {
+            PIPBrowser.LOGGER.warn("Could not read default config {}: {}", this.defaultResource, e.getMessage());
+        }
+        return defaults;
+    }
+
+    // Called by ConfigWriter around its writes so the watcher ignores them
+    void markOwnWrite() {
+        this.lastWriteNanos = System.nanoTime();
+    }
+}
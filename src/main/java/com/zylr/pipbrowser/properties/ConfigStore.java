@@ -0,0 +1,117 @@
+package com.zylr.pipbrowser.properties;
+
+import com.zylr.pipbrowser.PIPBrowser;
+import com.zylr.pipbrowser.widgets.WidgetType;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * All config files of the mod, each parsed once per process. A watcher
+ * thread reloads a file when it is edited outside the game.
+ */
+public class ConfigStore {
+    private static final Map<Path, ConfigFile> files = new ConcurrentHashMap<>();
+    // Shortcuts for the files read every frame, so lookups do not build paths
+    private static volatile ConfigFile main;
+    private static final Map<WidgetType, ConfigFile> widgetFiles = new ConcurrentHashMap<>();
+    private static final Set<Path> watchedDirectories = ConcurrentHashMap.newKeySet();
+    private static volatile WatchService watchService;
+
+    /**
+     * @param defaultResource classpath resource written to {@code path} if the file does not exist yet
+     */
+    public static ConfigFile get(String path, String defaultResource) {
+        Path key = Path.of(path).toAbsolutePath().normalize();
+        ConfigFile file = files.get(key);
+        if (file != null) {
+            return file;
+        }
+        file = files.computeIfAbsent(key, p -> new ConfigFile(p, defaultResource));
+        watch(key.getParent());
+        return file;
+    }
+
+    public static ConfigFile main() {
+        ConfigFile file = main;
+        if (file == null) {
+            file = get(MainProperties.PATH, MainProperties.DEFAULTS);
+            main = file;
+        }
+        return file;
+    }
+
+    // Every widget of a type shares one file
+    public static ConfigFile widget(WidgetType type) {
+        ConfigFile file = widgetFiles.get(type);
+        if (file == null) {
+            file = widgetFiles.computeIfAbsent(type, t -> get(t.getFile().getPath(), t.getDefaultFile()));
+        }
+        return file;
+    }
+
+    /**
+     * Start reloading files that are edited on disk. Safe to call more than once.
+     */
+    public static synchronized void startWatching() {
+        if (watchService != null) {
+            return;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            PIPBrowser.LOGGER.warn("Config files will not be reloaded: {}", e.getMessage());
+            return;
+        }
+        for (ConfigFile file : files.values()) {
+            watch(file.getPath().getParent());
+        }
+        Thread.ofPlatform().daemon().name("PIPBrowser config watcher").start(ConfigStore::watchLoop);
+    }
+
+    private static void watch(Path directory) {
+        WatchService service = watchService;
+        if (service == null || directory == null || !watchedDirectories.add(directory)) {
+            return;
+        }
+        try {
+            directory.toFile().mkdirs();
+            directory.register(service, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+        } catch (IOException e) {
+            watchedDirectories.remove(directory);
+            PIPBrowser.LOGGER.warn("Could not watch {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private static void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path directory = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    files.values().forEach(ConfigFile::reload);
+                    continue;
+                }
+                ConfigFile file = files.get(directory.resolve((Path) event.context()));
+                if (file != null) {
+                    file.reload();
+                }
+            }
+            key.reset();
+        }
+    }
+}
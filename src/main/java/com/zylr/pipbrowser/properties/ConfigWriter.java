@@ -0,0 +1,90 @@
+package com.zylr.pipbrowser.properties;
+
+import com.zylr.pipbrowser.PIPBrowser;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Writes config files off the render thread. Saves of the same file within
+ * a short window are coalesced into one write of the latest values, and every
+ * write goes to a temporary file that is then moved over the old one, so a
+ * crash never leaves a truncated config behind. {@link #flush()} writes
+ * whatever is still pending, e.g. when the client stops.
+ */
+public class ConfigWriter {
+    private static final long DEBOUNCE_MILLIS = 250;
+
+    // Latest unsaved values per file; a writer thread is running for every key
+    private static final Map<ConfigFile, Properties> pending = new ConcurrentHashMap<>();
+    // Keeps two writers of the same file (a late save racing a flush) from interleaving
+    private static final ReentrantLock writeLock = new ReentrantLock();
+
+    public static void submit(ConfigFile file, Properties values) {
+        if (pending.put(file, values) == null) {
+            Thread.ofVirtual().name("PIPBrowser config writer").start(() -> {
+                try {
+                    Thread.sleep(DEBOUNCE_MILLIS);
+                } catch (InterruptedException ignored) {
+                }
+                writePending(file);
+            });
+        }
+    }
+
+    public static boolean isPending(ConfigFile file) {
+        return pending.containsKey(file);
+    }
+
+    /**
+     * Write every pending file now, on the calling thread.
+     */
+    public static void flush() {
+        for (ConfigFile file : pending.keySet()) {
+            writePending(file);
+        }
+    }
+
+    private static void writePending(ConfigFile file) {
+        writeLock.lock();
+        try {
+            Properties values = pending.remove(file);
+            if (values != null) {
+                write(file, values);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static void write(ConfigFile file, Properties values) {
+        Path path = file.getPath();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Path parent = path.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            file.markOwnWrite();
+            try (OutputStream output = Files.newOutputStream(temp)) {
+                values.store(output, null);
+            }
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            file.markOwnWrite();
+        } catch (IOException e) {
+            PIPBrowser.LOGGER.warn("Could not write {}: {}", path, e.getMessage());
+        }
+    }
+}
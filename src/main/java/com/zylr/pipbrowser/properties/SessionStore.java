@@ -0,0 +1,74 @@
+package com.zylr.pipbrowser.properties;
+
+import com.zylr.pipbrowser.browser.DiscardedBrowser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The browser tabs of the last session, kept next to the other configs so
+ * they survive a restart. Only URL, title and scroll position are stored;
+ * tabs are rebuilt from them when they are first shown.
+ */
+public class SessionStore {
+    public static final String PATH = MainProperties.PROPDIR + "/session.properties";
+
+    /**
+     * @param activeIndex tab shown when the browser screen opens
+     * @param hudIndex    tab shown on the HUD, -1 for none
+     */
+    public record Session(List<DiscardedBrowser> tabs, int activeIndex, int hudIndex) {
+    }
+
+    public static void save(List<DiscardedBrowser> tabs, int activeIndex, int hudIndex) {
+        Properties session = new Properties();
+        session.setProperty("count", Integer.toString(tabs.size()));
+        session.setProperty("active", Integer.toString(activeIndex));
+        session.setProperty("hud", Integer.toString(hudIndex));
+        for (int i = 0; i < tabs.size(); i++) {
+            DiscardedBrowser tab = tabs.get(i);
+            String prefix = "tab." + i + ".";
+            session.setProperty(prefix + "url", tab.url() == null ? "" : tab.url());
+            session.setProperty(prefix + "title", tab.title() == null ? "" : tab.title());
+            session.setProperty(prefix + "scroll", tab.scrollX() + "," + tab.scrollY());
+        }
+        ConfigStore.get(PATH, null).save(session);
+    }
+
+    public static void clear() {
+        save(List.of(), 0, -1);
+    }
+
+    /**
+     * @return the saved session, or null if there is none
+     */
+    public static Session load() {
+        ConfigFile file = ConfigStore.get(PATH, null);
+        int count = file.getInt("count", 0);
+        List<DiscardedBrowser> tabs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String prefix = "tab." + i + ".";
+            String url = file.get(prefix + "url", "");
+            if (url.isEmpty()) {
+                continue;
+            }
+            int scrollX = 0;
+            int scrollY = 0;
+            String scroll = file.get(prefix + "scroll", "0,0");
+            int comma = scroll.indexOf(',');
+            try {
+                scrollX = Integer.parseInt(scroll.substring(0, comma).trim());
+                scrollY = Integer.parseInt(scroll.substring(comma + 1).trim());
+            } catch (RuntimeException ignored) {
+            }
+            tabs.add(new DiscardedBrowser(url, file.get(prefix + "title", ""), scrollX, scrollY, null, 0, 0));
+        }
+        if (tabs.isEmpty()) {
+            return null;
+        }
+        int active = Math.max(0, Math.min(tabs.size() - 1, file.getInt("active", 0)));
+        int hud = file.getInt("hud", -1);
+        return new Session(tabs, active, hud >= 0 && hud < tabs.size() ? hud : -1);
+    }
+}
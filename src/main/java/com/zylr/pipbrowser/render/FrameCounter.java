@@ -0,0 +1,17 @@
+package com.zylr.pipbrowser.render;
+
+/**
+ * Counts rendered frames (bumped at the start of GameRenderer.render) so
+ * widgets can tell whether they were already drawn this frame.
+ */
+public class FrameCounter {
+    private static long frame = 0;
+
+    public static void nextFrame() {
+        frame++;
+    }
+
+    public static long getFrame() {
+        return frame;
+    }
+}
@@ -0,0 +1,21 @@
+package com.zylr.pipbrowser.render;
+
+import net.minecraft.client.gui.navigation.ScreenRectangle;
+import net.minecraft.client.gui.render.state.pip.PictureInPictureRenderState;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The cached HUD browser layer of one frame, drawn by {@link HudCompositeRenderer}.
+ * @param key changes whenever anything that ends up in the composite changes
+ * @param layers number of browsers in the composite, bottom first
+ */
+public record HudCompositeRenderState(
+        HudCompositor compositor,
+        long key,
+        int layers,
+        int x0, int y0, int x1, int y1,
+        float scale,
+        @Nullable ScreenRectangle scissorArea,
+        @Nullable ScreenRectangle bounds
+) implements PictureInPictureRenderState {
+}
@@ -0,0 +1,85 @@
+package com.zylr.pipbrowser.render;
+
+import com.mojang.blaze3d.vertex.PoseStack;
+import com.mojang.blaze3d.vertex.VertexConsumer;
+import net.minecraft.Util;
+import net.minecraft.client.gui.render.pip.PictureInPictureRenderer;
+import net.minecraft.client.renderer.MultiBufferSource;
+import net.minecraft.client.renderer.RenderStateShard;
+import net.minecraft.client.renderer.RenderType;
+import net.minecraft.resources.ResourceLocation;
+
+import java.util.function.Function;
+
+/**
+ * Renders the HUD browser layer into an offscreen texture that is reused for
+ * as long as it did not change, so static pages cost one blit per frame.
+ */
+public class HudCompositeRenderer extends PictureInPictureRenderer<HudCompositeRenderState> {
+    private static final Function<ResourceLocation, RenderType> ROUNDED_BROWSER = Util.memoize(texture ->
+            RenderType.create("pipbrowser_rounded_browser", 1536, false, false, ModRenderPipelines.ROUNDED_BROWSER,
+                    RenderType.CompositeState.builder()
+                            .setTextureState(new RenderStateShard.TextureStateShard(texture, false))
+                            .createCompositeState(false)));
+
+    private long renderedKey = Long.MIN_VALUE;
+
+    public HudCompositeRenderer(MultiBufferSource.BufferSource bufferSource) {
+        super(bufferSource);
+    }
+
+    @Override
+    public Class<HudCompositeRenderState> getRenderStateClass() {
+        return HudCompositeRenderState.class;
+    }
+
+    @Override
+    protected boolean textureIsReadyToBlit(HudCompositeRenderState state) {
+        return state.key() == this.renderedKey;
+    }
+
+    // Keep the origin at the top edge so the pose below can use plain GUI coordinates (y down)
+    @Override
+    protected float getTranslateY(int height, int guiScale) {
+        return 0.0f;
+    }
+
+    @Override
+    protected void renderToTexture(HudCompositeRenderState state, PoseStack poseStack) {
+        // The base transform centers x on the texture and scales GUI units to pixels
+        poseStack.translate(-(state.x1() - state.x0()) / 2.0f - state.x0(), -state.y0(), 0.0f);
+        PoseStack.Pose pose = poseStack.last();
+        // Bottom first, like the HUD draws them
+        for (int i = 0; i < state.layers(); i++) {
+            HudCompositor.Layer layer = state.compositor().layer(i);
+            VertexConsumer consumer = this.bufferSource.getBuffer(ROUNDED_BROWSER.apply(layer.location));
+            // Same vertex packing as RoundedBrowserRenderState
+            int width = layer.x1 - layer.x0;
+            int height = layer.y1 - layer.y0;
+            float packedRadius = (layer.radius + 0.25f) / 127.0f;
+            float packedThickness = (layer.thickness + 0.25f) / 127.0f;
+            vertex(consumer, pose, layer, layer.x0, layer.y0, layer.u0, layer.v0, 0, 0, width, height, packedRadius, packedThickness);
+            vertex(consumer, pose, layer, layer.x0, layer.y1, layer.u0, layer.v1, 0, height, width, height, packedRadius, packedThickness);
+            vertex(consumer, pose, layer, layer.x1, layer.y1, layer.u1, layer.v1, width, height, width, height, packedRadius, packedThickness);
+            vertex(consumer, pose, layer, layer.x1, layer.y0, layer.u1, layer.v0, width, 0, width, height, packedRadius, packedThickness);
+        }
+        this.renderedKey = state.key();
+    }
+
+    private static void vertex(VertexConsumer consumer, PoseStack.Pose pose, HudCompositor.Layer layer, int x, int y,
+                               float u, float v, int localX, int localY, int width, int height,
+                               float packedRadius, float packedThickness) {
+        consumer.addVertex(pose, x, y, 0.0f)
+                .setUv(u, v)
+                .setColor(layer.color)
+                .setUv1(localX, localY)
+                .setUv2(width, height)
+                // Raw normal: the pose's normal matrix would renormalize the packed values
+                .setNormal(packedRadius, packedThickness, 0.0f);
+    }
+
+    @Override
+    protected String getTextureLabel() {
+        return "pipbrowser hud composite";
+    }
+}
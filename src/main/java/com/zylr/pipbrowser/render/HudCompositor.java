@@ -0,0 +1,152 @@
+package com.zylr.pipbrowser.render;
+
+import com.zylr.pipbrowser.browser.BrowserTexture;
+import com.zylr.pipbrowser.mixin.GuiGraphicsAccessor;
+import net.minecraft.client.gui.GuiGraphics;
+import net.minecraft.client.gui.navigation.ScreenRectangle;
+import net.minecraft.client.gui.render.state.GuiRenderState;
+import net.minecraft.resources.ResourceLocation;
+import org.joml.Matrix3x2f;
+
+/**
+ * Caches the HUD browser layer in one offscreen texture, drawn by {@link HudCompositeRenderer}.
+ * Consecutive HUD browsers are collected with {@link #add} and submitted together by
+ * {@link #flush}, which the HUD pass calls before any other widget draws and at the end,
+ * so the HUD drawing order is kept.
+ * <p>
+ * The key covers the HUD widget list and layout versions plus, per browser, its texture
+ * sequence, placement and color. While it matches the previous frame the layer is static
+ * and the cached texture is blitted (redrawn once after a change). A layer that changed
+ * since the previous frame (video, animations, a drag) is drawn directly, one quad per
+ * browser, so it never costs a re-render plus a blit. The renderer has a single texture,
+ * so only the first group of a frame goes through the cache.
+ * <p>
+ * The render states of a frame are drawn after the whole HUD was submitted, so every
+ * layer slot is used at most once per frame.
+ */
+public class HudCompositor {
+    private static final int MAX_LAYERS = 8;
+
+    private final Layer[] layers = new Layer[MAX_LAYERS];
+    // Slots taken this frame, and the first slot of the group waiting for flush
+    private int used;
+    private int start;
+    private long key;
+    private long previousKey = Long.MIN_VALUE;
+    private boolean cacheUsed;
+    // Reused while nothing changed, so a static HUD submits the same state every frame
+    private HudCompositeRenderState state;
+
+    public HudCompositor() {
+        for (int i = 0; i < MAX_LAYERS; i++) {
+            this.layers[i] = new Layer();
+        }
+    }
+
+    /**
+     * Start a HUD frame.
+     * @param hudVersion {@link com.zylr.pipbrowser.hud.Hud#getVersion()} of the HUD being drawn
+     */
+    public void begin(int hudVersion, int layoutVersion) {
+        this.used = 0;
+        this.start = 0;
+        this.cacheUsed = false;
+        this.key = ((long) hudVersion << 32) ^ layoutVersion;
+    }
+
+    /**
+     * Queue a rounded browser quad (see {@link RoundedBrowserRenderState} for the parameters)
+     * on top of the ones already collected.
+     * @return false when every slot is taken this frame; the queue is flushed and the caller draws it itself
+     */
+    public boolean add(GuiGraphics gui, BrowserTexture texture, int x0, int y0, int x1, int y1,
+                       float u0, float u1, float v0, float v1, int color, int radius, int thickness) {
+        if (this.used == MAX_LAYERS) {
+            flush(gui);
+            return false;
+        }
+        Layer layer = this.layers[this.used++];
+        layer.texture = texture;
+        layer.location = texture.getLocation();
+        layer.pose.set(gui.pose());
+        layer.x0 = x0;
+        layer.y0 = y0;
+        layer.x1 = x1;
+        layer.y1 = y1;
+        layer.u0 = u0;
+        layer.u1 = u1;
+        layer.v0 = v0;
+        layer.v1 = v1;
+        layer.color = color;
+        layer.radius = radius;
+        layer.thickness = thickness;
+
+        long k = this.key * 31 + layer.location.hashCode();
+        k = k * 31 + texture.getSequence();
+        k = k * 31 + (((long) x0 << 48) ^ ((long) y0 << 32) ^ ((long) x1 << 16) ^ y1);
+        k = k * 31 + Float.floatToIntBits(u1) * 31L + Float.floatToIntBits(v1);
+        k = k * 31 + Float.floatToIntBits(u0) * 31L + Float.floatToIntBits(v0);
+        k = k * 31 + color;
+        k = k * 31 + ((long) radius << 16 | thickness);
+        this.key = k;
+        return true;
+    }
+
+    /**
+     * Submit the browsers collected since the last flush, from the cache when they did not change.
+     */
+    public void flush(GuiGraphics gui) {
+        int count = this.used - this.start;
+        if (count == 0) {
+            return;
+        }
+        GuiRenderState renderState = ((GuiGraphicsAccessor) gui).getGuiRenderState();
+        if (!this.cacheUsed) {
+            this.cacheUsed = true;
+            boolean unchanged = this.key == this.previousKey;
+            this.previousKey = this.key;
+            if (unchanged) {
+                if (this.state == null || this.state.key() != this.key) {
+                    int x0 = Integer.MAX_VALUE, y0 = Integer.MAX_VALUE, x1 = Integer.MIN_VALUE, y1 = Integer.MIN_VALUE;
+                    for (int i = 0; i < count; i++) {
+                        Layer layer = this.layers[i];
+                        x0 = Math.min(x0, layer.x0);
+                        y0 = Math.min(y0, layer.y0);
+                        x1 = Math.max(x1, layer.x1);
+                        y1 = Math.max(y1, layer.y1);
+                    }
+                    this.state = new HudCompositeRenderState(this, this.key, count, x0, y0, x1, y1, 1.0f, null,
+                            new ScreenRectangle(x0, y0, x1 - x0, y1 - y0));
+                }
+                renderState.submitPicturesInPictureState(this.state);
+                this.start = this.used;
+                return;
+            }
+        }
+        for (int i = this.start; i < this.used; i++) {
+            Layer layer = this.layers[i];
+            renderState.submitGuiElement(layer.direct.set(layer.texture.getTextureView(), layer.pose,
+                    layer.x0, layer.y0, layer.x1, layer.y1, layer.u0, layer.u1, layer.v0, layer.v1,
+                    layer.color, layer.radius, layer.thickness));
+        }
+        this.start = this.used;
+    }
+
+    Layer layer(int index) {
+        return this.layers[index];
+    }
+
+    // Reused between frames so submitting the HUD does not allocate
+    static class Layer {
+        final Matrix3x2f pose = new Matrix3x2f();
+        // Drawn through this when the layer is not served from the cache
+        final RoundedBrowserRenderState direct = new RoundedBrowserRenderState();
+        BrowserTexture texture;
+        ResourceLocation location;
+        int x0, y0, x1, y1;
+        float u0, u1, v0, v1;
+        int color;
+        int radius;
+        int thickness;
+    }
+}
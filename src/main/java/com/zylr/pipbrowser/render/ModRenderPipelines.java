@@ -0,0 +1,34 @@
+package com.zylr.pipbrowser.render;
+
+import com.mojang.blaze3d.pipeline.BlendFunction;
+import com.mojang.blaze3d.pipeline.RenderPipeline;
+import com.mojang.blaze3d.platform.DepthTestFunction;
+import com.mojang.blaze3d.shaders.UniformType;
+import com.mojang.blaze3d.vertex.DefaultVertexFormat;
+import com.mojang.blaze3d.vertex.VertexFormat;
+import com.zylr.pipbrowser.PIPBrowser;
+import net.minecraft.resources.ResourceLocation;
+
+public class ModRenderPipelines {
+    /**
+     * Browser texture, rounded clip mask, border and tint in one quad using a signed distance function.
+     * Reuses the entity vertex format for the extra per-quad data, see {@link RoundedBrowserRenderState}.
+     */
+    public static final RenderPipeline ROUNDED_BROWSER = RenderPipeline.builder()
+            .withLocation(id("pipeline/rounded_browser"))
+            .withVertexShader(id("core/rounded_browser"))
+            .withFragmentShader(id("core/rounded_browser"))
+            .withUniform("DynamicTransforms", UniformType.UNIFORM_BUFFER)
+            .withUniform("Projection", UniformType.UNIFORM_BUFFER)
+            .withSampler("Sampler0")
+            .withBlend(BlendFunction.TRANSLUCENT)
+            .withDepthTestFunction(DepthTestFunction.NO_DEPTH_TEST)
+            .withDepthWrite(false)
+            .withCull(false)
+            .withVertexFormat(DefaultVertexFormat.NEW_ENTITY, VertexFormat.Mode.QUADS)
+            .build();
+
+    private static ResourceLocation id(String path) {
+        return ResourceLocation.fromNamespaceAndPath(PIPBrowser.MODID, path);
+    }
+}
@@ -0,0 +1,37 @@
+package com.zylr.pipbrowser.render;
+
+import net.minecraft.client.Minecraft;
+
+/**
+ * Decides whether a HUD browser would be invisible this frame: fully covered
+ * by a container background drawn on top of it, entirely off screen, or
+ * drawn with a fully transparent background color (which also fades the
+ * page to nothing).
+ */
+public class OcclusionTracker {
+
+    /**
+     * The widget and cover rectangles are in GUI units; pass an empty cover when nothing is drawn over the widget.
+     * @param color widget background color (ARGB)
+     */
+    public static boolean isOccluded(int x, int y, int width, int height, int color,
+                                     int coverX, int coverY, int coverWidth, int coverHeight) {
+        if ((color >>> 24) == 0 || width <= 0 || height <= 0) {
+            return true;
+        }
+        int screenWidth = Minecraft.getInstance().getWindow().getGuiScaledWidth();
+        int screenHeight = Minecraft.getInstance().getWindow().getGuiScaledHeight();
+        if (x >= screenWidth || y >= screenHeight || x + width <= 0 || y + height <= 0) {
+            return true;
+        }
+        if (coverWidth <= 0 || coverHeight <= 0) {
+            return false;
+        }
+        // Only the part of the widget that is on screen has to be covered
+        int left = Math.max(0, x);
+        int top = Math.max(0, y);
+        int right = Math.min(screenWidth, x + width);
+        int bottom = Math.min(screenHeight, y + height);
+        return left >= coverX && top >= coverY && right <= coverX + coverWidth && bottom <= coverY + coverHeight;
+    }
+}
@@ -0,0 +1,104 @@
+package com.zylr.pipbrowser.render;
+
+import com.mojang.blaze3d.pipeline.RenderPipeline;
+import com.mojang.blaze3d.textures.GpuTextureView;
+import com.mojang.blaze3d.vertex.VertexConsumer;
+import net.minecraft.client.gui.navigation.ScreenRectangle;
+import net.minecraft.client.gui.render.TextureSetup;
+import net.minecraft.client.gui.render.state.GuiElementRenderState;
+import org.joml.Matrix3x2f;
+import org.joml.Matrix3x2fc;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * One quad covering the whole widget (border included). The shader gets its
+ * per-quad data through the spare entity vertex attributes:
+ * UV1 = position inside the widget in GUI units, UV2 = widget size,
+ * Normal.xy = corner radius / border thickness (divided by 127),
+ * Color = backgroundColor (border color, its alpha also tints the page).
+ * <p>
+ * Each widget keeps one instance and {@link #set} refills it every frame; the GUI
+ * render state is rebuilt per frame, so the previous frame is done with it by then.
+ * The texture setup and bounds are only rebuilt when the texture, pose or rectangle change.
+ */
+public final class RoundedBrowserRenderState implements GuiElementRenderState {
+    private final Matrix3x2f pose = new Matrix3x2f();
+    private GpuTextureView texture;
+    private TextureSetup textureSetup;
+    private ScreenRectangle bounds;
+    private int x0, y0, x1, y1;
+    private float u0, u1, v0, v1;
+    private int color;
+    private int radius;
+    private int thickness;
+
+    public RoundedBrowserRenderState set(GpuTextureView texture, Matrix3x2fc pose,
+                                         int x0, int y0, int x1, int y1,
+                                         float u0, float u1, float v0, float v1,
+                                         int color, int radius, int thickness) {
+        if (texture != this.texture) {
+            this.texture = texture;
+            this.textureSetup = TextureSetup.singleTexture(texture);
+        }
+        if (this.bounds == null || !this.pose.equals(pose)
+                || x0 != this.x0 || y0 != this.y0 || x1 != this.x1 || y1 != this.y1) {
+            this.pose.set(pose);
+            this.bounds = new ScreenRectangle(x0, y0, x1 - x0, y1 - y0).transformMaxBounds(this.pose);
+        }
+        this.x0 = x0;
+        this.y0 = y0;
+        this.x1 = x1;
+        this.y1 = y1;
+        this.u0 = u0;
+        this.u1 = u1;
+        this.v0 = v0;
+        this.v1 = v1;
+        this.color = color;
+        this.radius = radius;
+        this.thickness = thickness;
+        return this;
+    }
+
+    @Override
+    public RenderPipeline pipeline() {
+        return ModRenderPipelines.ROUNDED_BROWSER;
+    }
+
+    @Override
+    public TextureSetup textureSetup() {
+        return this.textureSetup;
+    }
+
+    @Override
+    public @Nullable ScreenRectangle scissorArea() {
+        return null;
+    }
+
+    @Override
+    public @Nullable ScreenRectangle bounds() {
+        return this.bounds;
+    }
+
+    @Override
+    public void buildVertices(VertexConsumer consumer) {
+        int width = this.x1 - this.x0;
+        int height = this.y1 - this.y0;
+        // Small bias so the byte packing truncates to the intended integer
+        float packedRadius = (this.radius + 0.25f) / 127.0f;
+        float packedThickness = (this.thickness + 0.25f) / 127.0f;
+        vertex(consumer, this.x0, this.y0, this.u0, this.v0, 0, 0, width, height, packedRadius, packedThickness);
+        vertex(consumer, this.x0, this.y1, this.u0, this.v1, 0, height, width, height, packedRadius, packedThickness);
+        vertex(consumer, this.x1, this.y1, this.u1, this.v1, width, height, width, height, packedRadius, packedThickness);
+        vertex(consumer, this.x1, this.y0, this.u1, this.v0, width, 0, width, height, packedRadius, packedThickness);
+    }
+
+    private void vertex(VertexConsumer consumer, int x, int y, float u, float v, int localX, int localY,
+                        int width, int height, float packedRadius, float packedThickness) {
+        consumer.addVertexWith2DPose(this.pose, x, y)
+                .setUv(u, v)
+                .setColor(this.color)
+                .setUv1(localX, localY)
+                .setUv2(width, height)
+                .setNormal(packedRadius, packedThickness, 0.0f);
+    }
+}
@@ -1,7 +1,14 @@
 package com.zylr.pipbrowser.screens;
 
-import com.cinemamod.mcef.MCEFBrowser;
+import com.zylr.pipbrowser.Config;
 import com.zylr.pipbrowser.PIPBrowser;
+import com.zylr.pipbrowser.browser.BrowserInputQueue;
+import com.zylr.pipbrowser.browser.BrowserManager;
+import com.zylr.pipbrowser.browser.BrowserSurface;
+import com.zylr.pipbrowser.browser.DiscardedBrowser;
+import com.zylr.pipbrowser.browser.ManagedBrowser;
+import com.zylr.pipbrowser.browser.PageState;
+import com.zylr.pipbrowser.properties.SessionStore;
 import com.zylr.pipbrowser.widgets.BrowserWidget;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.GuiGraphics;
@@ -25,7 +32,7 @@ public class BrowserScreen extends Screen {
     public static final int BROWSER_DRAW_BOTTOM = 20;
     private static final int TAB_WIDTH = 150;
 
-    private MCEFBrowser browser;
+    private ManagedBrowser browser;
     private BrowserWidget myBrowser;
     private Button minimiseButton;
     private EditBox urlTextField;
@@ -34,6 +41,8 @@ public class BrowserScreen extends Screen {
     // Tab management - static to persist across screen opens/closes
     private static java.util.List<BrowserTab> persistedTabs = null;
     private static int persistedActiveTabIndex = 0;
+    // The session file is read once per client run
+    private static boolean sessionRestored = false;
 
     // Instance-level references
     private java.util.List<BrowserTab> tabs;
@@ -45,6 +54,9 @@ public class BrowserScreen extends Screen {
     private Button scrollRightButton;
 
     private double oldX, oldY;
+    // Page state last put into the URL field
+    private ManagedBrowser urlFieldBrowser;
+    private int urlFieldPageVersion = -1;
 
     // Inner class to represent a browser tab
     private static class BrowserTab {
@@ -54,6 +66,11 @@ public class BrowserScreen extends Screen {
         Button closeButton;
         int framesSinceCreation = 0;
         boolean hasBeenResized = false;
+        // Used to pick the least recently used tabs when over the live browser budget
+        long lastActivated = System.nanoTime();
+        // Page state last shown in the tab button, so it is only rebuilt when the browser reports a change
+        ManagedBrowser shownBrowser;
+        int shownPageVersion = -1;
 
         BrowserTab(BrowserWidget widget, String title) {
             this.browserWidget = widget;
@@ -67,6 +84,7 @@ public class BrowserScreen extends Screen {
 
     public BrowserScreen(String initialUrl) {
         super(Component.empty().append("Browser"));
+        restoreSession();
 
         // Restore persisted tabs if they exist
         if (persistedTabs != null && !persistedTabs.isEmpty()) {
@@ -106,15 +124,157 @@ public class BrowserScreen extends Screen {
         }
     }
 
+    /**
+     * Rebuild the tabs of the last session. Only the active tab and the HUD tab get a browser,
+     * the others stay placeholders until they are first shown. The HUD tab only goes back on the
+     * HUD when nothing else is there yet, otherwise it is a background tab like the others.
+     * Does nothing after the first call.
+     */
+    public static void restoreSession() {
+        if (sessionRestored) {
+            return;
+        }
+        sessionRestored = true;
+        if (persistedTabs != null) {
+            return;
+        }
+        SessionStore.Session session = SessionStore.load();
+        if (session == null) {
+            return;
+        }
+        java.util.List<BrowserTab> restored = new java.util.ArrayList<>();
+        BrowserWidget hudWidget = null;
+        int hudIndex = PIPBrowser.getInstance().mainHud.getBrowserWidget() == null ? session.hudIndex() : -1;
+        for (int i = 0; i < session.tabs().size(); i++) {
+            DiscardedBrowser saved = session.tabs().get(i);
+            BrowserWidget widget = BrowserWidget.placeholder(0, 0, 267, 150, saved);
+            if (i == session.activeIndex() || i == hudIndex) {
+                widget.restore();
+            }
+            if (i == hudIndex) {
+                hudWidget = widget;
+            } else {
+                widget.setSurface(BrowserSurface.BACKGROUND);
+            }
+            String title = saved.title() == null || saved.title().isEmpty() ? "Tab " + (i + 1) : saved.title();
+            restored.add(new BrowserTab(widget, title));
+        }
+        persistedTabs = restored;
+        persistedActiveTabIndex = session.activeIndex();
+        if (hudWidget != null) {
+            PIPBrowser.getInstance().mainHud.setBrowserWidget(hudWidget);
+            PIPBrowser.getInstance().mainHud.fillHudList();
+        }
+        PIPBrowser.LOGGER.info("Restored {} browser tabs from the last session", restored.size());
+    }
+
+    public static boolean hasTabs() {
+        return persistedTabs != null && !persistedTabs.isEmpty();
+    }
+
+    /**
+     * Index of the most recently used tab that matches, or -1 if there is none.
+     */
+    public static int findTab(java.util.function.Predicate<BrowserWidget> matches) {
+        if (persistedTabs == null) {
+            return -1;
+        }
+        int found = -1;
+        long foundActivated = Long.MIN_VALUE;
+        for (int i = 0; i < persistedTabs.size(); i++) {
+            BrowserTab tab = persistedTabs.get(i);
+            if (tab.browserWidget == null || !matches.test(tab.browserWidget)) {
+                continue;
+            }
+            if (found < 0 || tab.lastActivated > foundActivated) {
+                found = i;
+                foundActivated = tab.lastActivated;
+            }
+        }
+        return found;
+    }
+
+    public static BrowserWidget getTabWidget(int index) {
+        if (persistedTabs == null || index < 0 || index >= persistedTabs.size()) {
+            return null;
+        }
+        return persistedTabs.get(index).browserWidget;
+    }
+
+    /**
+     * Make a tab the active one the next time the screen opens.
+     */
+    public static void selectTab(int index) {
+        if (persistedTabs != null && index >= 0 && index < persistedTabs.size()) {
+            persistedActiveTabIndex = index;
+        }
+    }
+
+    /**
+     * Write the tab list to the session file (in the background).
+     */
+    public static void saveSession() {
+        if (persistedTabs == null || persistedTabs.isEmpty()) {
+            if (sessionRestored) {
+                SessionStore.clear();
+            }
+            return;
+        }
+        BrowserWidget hudWidget = PIPBrowser.getInstance().mainHud.getBrowserWidget();
+        java.util.List<DiscardedBrowser> saved = new java.util.ArrayList<>();
+        // Tabs without a page are left out, so both indexes point into the saved list
+        int hudIndex = -1;
+        int active = 0;
+        for (int i = 0; i < persistedTabs.size(); i++) {
+            BrowserTab tab = persistedTabs.get(i);
+            BrowserWidget widget = tab.browserWidget;
+            DiscardedBrowser state = null;
+            if (widget != null && widget.browser != null) {
+                state = widget.browser.snapshot(tab.title);
+            } else if (widget != null) {
+                state = widget.getDiscarded();
+            }
+            if (state == null || state.url() == null || state.url().isEmpty()) {
+                continue;
+            }
+            if (widget == hudWidget) {
+                hudIndex = saved.size();
+            }
+            if (i == persistedActiveTabIndex) {
+                active = saved.size();
+            }
+            saved.add(state);
+        }
+        SessionStore.save(saved, active, hudIndex);
+    }
+
     @Override
     protected void init() {
         super.init();
+        // Keep the static copy current so the session can be saved even if the game exits with the screen open
+        persistedTabs = this.tabs;
+        persistedActiveTabIndex = this.activeTabIndex;
 
         // Clear any previous tab button references
         for (BrowserTab tab : tabs) {
             tab.tabButton = null;
             tab.closeButton = null;
+            // Tab positions may have changed, titles are worked out again on the next frame
+            tab.shownPageVersion = -1;
+        }
+        // Rebuild the active tab if it was discarded, then trim the others down to the live browser budget
+        if (!tabs.isEmpty()) {
+            BrowserTab activeTab = tabs.get(activeTabIndex);
+            if (activeTab.browserWidget != null && activeTab.browserWidget.isDiscarded()) {
+                activeTab.browserWidget.restore();
+                activeTab.framesSinceCreation = 0;
+                activeTab.hasBeenResized = false;
+            }
+            activeTab.lastActivated = System.nanoTime();
+            enforceLiveBrowserBudget();
         }
+        // init runs again after every tab switch, open and close, so this keeps the paint rates in step
+        applySurfaces(BrowserSurface.FULLSCREEN);
 
         // Get active tab's browser
         if (!tabs.isEmpty()) {
@@ -122,11 +282,10 @@ public class BrowserScreen extends Screen {
             this.myBrowser = activeTab.browserWidget;
             this.browser = myBrowser.browser;
 
-            if (browser == null) {
-                return;
+            // The browser may still be queued with the BrowserManager; render() picks it up when it arrives
+            if (browser != null) {
+                this.mouseReleased(new MouseButtonEvent(0, 0, new MouseButtonInfo(0, 0)));
             }
-
-            this.mouseReleased(new MouseButtonEvent(0, 0, new MouseButtonInfo(0, 0)));
             this.oldX = myBrowser.getRelativeAnchorX();
             this.oldY = myBrowser.getRelativeAnchorY();
 
@@ -184,8 +343,8 @@ public class BrowserScreen extends Screen {
 
         String initialUrl = "https://www.google.com";
         if (browser != null) {
-            String browserUrl = browser.getURL();
-            if (browserUrl != null && !browserUrl.isEmpty() && !browserUrl.equals("about:blank")) {
+            String browserUrl = browser.getPageState().url();
+            if (!browserUrl.isEmpty() && !browserUrl.equals("about:blank")) {
                 initialUrl = browserUrl;
             }
         }
@@ -294,7 +453,7 @@ public class BrowserScreen extends Screen {
                     int newWidth = scaleX(width);
                     int newHeight = scaleY(height);
                     if (newWidth > 100 && newHeight > 100) {
-                        tab.browserWidget.browser.resize(newWidth, newHeight);
+                        tab.browserWidget.resizeBrowser(newWidth, newHeight);
                         // Update widget dimensions
                         tab.browserWidget.setWidgetWidth(width);
                         tab.browserWidget.setWidgetHeight(height);
@@ -318,18 +477,17 @@ public class BrowserScreen extends Screen {
         // Persist tabs and active tab index for next time screen opens
         persistedTabs = this.tabs;
         persistedActiveTabIndex = this.activeTabIndex;
+        saveSession();
 
-        // Resize all browsers back to HUD size when closing BrowserScreen
+        // Resize all widgets back to HUD size when closing BrowserScreen
         // Widget dimensions: 267x150 (logical GUI coordinates)
-        // Browser resolution: 1920x1080 (texture size, will be scaled to fit widget)
+        // The browser resolution is picked by the widget's resolution governor on the next HUD frame
         for (BrowserTab tab : tabs) {
             if (tab.browserWidget != null && tab.browserWidget.browser != null) {
                 try {
                     tab.browserWidget.setWidgetWidth(267);
                     tab.browserWidget.setWidgetHeight(150);
-                    tab.browserWidget.browser.resize(1920, 1080);
-                    tab.browserWidget.setAnchorX(tab.browserWidget.getAnchorXFromRelative(oldX));
-                    tab.browserWidget.setAnchorY(tab.browserWidget.getAnchorYFromRelative(oldY));
+                    tab.browserWidget.setRelativeAnchor(oldX, oldY);
                 } catch (Exception e) {
                     PIPBrowser.LOGGER.warn("Could not resize browser on close: {}", e.getMessage());
                 }
@@ -341,6 +499,7 @@ public class BrowserScreen extends Screen {
             PIPBrowser.getInstance().mainHud.setBrowserWidget(this.myBrowser);
             PIPBrowser.getInstance().mainHud.fillHudList();
         }
+        applySurfaces(BrowserSurface.HUD);
 
         // Force Minecraft to recapture the mouse
         Minecraft mc = Minecraft.getInstance();
@@ -372,6 +531,52 @@ public class BrowserScreen extends Screen {
         }
     }
 
+    // Discard the least recently activated tabs until no more than maxLiveBrowsers are alive
+    private void enforceLiveBrowserBudget() {
+        int budget = Config.getMaxLiveBrowsers();
+        if (budget <= 0) {
+            return;
+        }
+        BrowserWidget hudWidget = PIPBrowser.getInstance().mainHud.getBrowserWidget();
+        boolean discardHudTab = Config.shouldDiscardHudTab();
+        boolean discardPlayingTabs = Config.shouldDiscardPlayingTabs();
+
+        int live = 0;
+        java.util.List<BrowserTab> candidates = new java.util.ArrayList<>();
+        for (int i = 0; i < tabs.size(); i++) {
+            BrowserTab tab = tabs.get(i);
+            BrowserWidget widget = tab.browserWidget;
+            if (widget == null || widget.browser == null) {
+                continue;
+            }
+            live++;
+            if (i == activeTabIndex
+                    || (widget == hudWidget && !discardHudTab)
+                    || (widget.browser.isPlayingMedia() && !discardPlayingTabs)) {
+                continue;
+            }
+            candidates.add(tab);
+        }
+        candidates.sort(java.util.Comparator.comparingLong(tab -> tab.lastActivated));
+        for (BrowserTab tab : candidates) {
+            if (live <= budget) {
+                break;
+            }
+            tab.browserWidget.discard(tab.title);
+            live--;
+        }
+    }
+
+    // The active tab is shown on the given surface, every other tab paints at the background rate
+    private void applySurfaces(BrowserSurface activeSurface) {
+        for (int i = 0; i < tabs.size(); i++) {
+            BrowserWidget widget = tabs.get(i).browserWidget;
+            if (widget != null) {
+                widget.setSurface(i == activeTabIndex ? activeSurface : BrowserSurface.BACKGROUND);
+            }
+        }
+    }
+
     private void createTabButtons() {
         int screenWidth = Minecraft.getInstance().getWindow().getGuiScaledWidth();
         int scrollButtonWidth = 20;
@@ -507,7 +712,7 @@ public class BrowserScreen extends Screen {
 
         // Capture the browser instance to close *after* we update UI state to avoid side-effects
         BrowserTab tab = tabs.get(tabIndex);
-        com.cinemamod.mcef.MCEFBrowser browserToClose = null;
+        ManagedBrowser browserToClose = null;
         if (tab.browserWidget != null && tab.browserWidget.browser != null) {
             browserToClose = tab.browserWidget.browser;
             // Detach the browser reference from the widget immediately so no other code
@@ -515,6 +720,11 @@ public class BrowserScreen extends Screen {
             tab.browserWidget.browser = null;
         }
 
+        // Drops the thumbnail of a discarded tab
+        if (tab.browserWidget != null) {
+            tab.browserWidget.cleanup();
+        }
+
         // Remove tab from list
         tabs.remove(tabIndex);
 
@@ -524,23 +734,14 @@ public class BrowserScreen extends Screen {
             // Clear persisted tabs so nothing restores on next open
             persistedTabs = null;
             persistedActiveTabIndex = 0;
+            SessionStore.clear();
 
             // Clear the HUD browser widget
             PIPBrowser.getInstance().mainHud.setBrowserWidget(null);
             PIPBrowser.getInstance().mainHud.fillHudList();
 
-            // Close the browser instance before closing the screen
-            if (browserToClose != null) {
-                try {
-                    browserToClose.setFocus(false);
-                    browserToClose.sendMouseRelease(-1, -1, -1);
-                    browserToClose.sendKeyPress(256, 1, 0);
-                    browserToClose.sendKeyRelease(256, 1, 0);
-                    browserToClose.close();
-                } catch (Throwable t) {
-                    PIPBrowser.LOGGER.warn("Failed to close browser instance: {}", t.getMessage());
-                }
-            }
+            // The manager releases its input now and closes it on a later tick
+            BrowserManager.close(browserToClose);
 
             // Close the screen
             minecraft.setScreen(null);
@@ -579,31 +780,18 @@ public class BrowserScreen extends Screen {
         // Use rebuildWidgets to properly clear and rebuild the screen
         this.rebuildWidgets();
 
-        // Now close the MCEF browser instance off the render path to avoid triggering reloads
+        // Now hand the MCEF browser instance to the manager, which closes it off the frame path
         // (we detached the widget reference above to prevent UI code from touching it).
-        if (browserToClose != null) {
-            try {
-                // Try to gracefully release focus and input before closing the instance
-                try {
-                    browserToClose.setFocus(false);
-                } catch (Throwable ignore) {}
-                try {
-                    browserToClose.sendMouseRelease(-1, -1, -1);
-                } catch (Throwable ignore) {}
-                try {
-                    browserToClose.sendKeyPress(256, 1, 0);
-                    browserToClose.sendKeyRelease(256, 1, 0);
-                } catch (Throwable ignore) {}
-
-                browserToClose.close();
-            } catch (Throwable t) {
-                PIPBrowser.LOGGER.warn("Failed to close browser instance cleanly: {}", t.getMessage());
-            }
-        }
+        BrowserManager.close(browserToClose);
     }
 
     @Override
     public void render(GuiGraphics guiGraphics, int i, int j, float f) {
+        // Browsers are created asynchronously, adopt the active one once it exists
+        if (this.myBrowser != null && this.browser != this.myBrowser.browser) {
+            this.browser = this.myBrowser.browser;
+        }
+
         // Handle delayed browser resize for all tabs (avoid OpenGL conflicts during creation)
         for (BrowserTab tab : tabs) {
             if (!tab.hasBeenResized && tab.browserWidget != null && tab.browserWidget.browser != null) {
@@ -611,28 +799,16 @@ public class BrowserScreen extends Screen {
                 // Wait 5 frames before resizing to ensure browser is fully initialized
                 if (tab.framesSinceCreation > 5) {
                     if (width > 100 && height > 100) {
-                        tab.browserWidget.browser.resize(scaleX(width), scaleY(height));
+                        tab.browserWidget.resizeBrowser(scaleX(width), scaleY(height));
                     }
                     tab.hasBeenResized = true;
                 }
             }
         }
 
-        // Update URL text field if browser URL has changed and text field is not focused
-        if (this.urlTextField != null && browser != null && !this.urlTextField.isFocused()) {
-            String browserUrl = browser.getURL();
-            if (browserUrl != null && !browserUrl.isEmpty() && !browserUrl.equals("about:blank")) {
-                String currentTextFieldValue = this.urlTextField.getValue();
-                if (!browserUrl.equals(currentTextFieldValue)) {
-                    this.urlTextField.setValue(browserUrl);
-                    // Set cursor to beginning so long URLs show the domain first
-                    this.urlTextField.moveCursorToStart(false);
-                }
-            }
-        }
-
-        // Update active tab name based on current URL
-        updateActiveTabName();
+        // URL field and tab titles follow the address, title and load callbacks, nothing is polled
+        updateUrlField();
+        updateTabTitles();
 
         // Then render widgets and buttons on top using the default Screen rendering path
         super.render(guiGraphics, i, j, f);
@@ -741,36 +917,59 @@ public class BrowserScreen extends Screen {
         }
     }
 
-    private void updateActiveTabName() {
-        if (tabs.isEmpty() || activeTabIndex < 0 || activeTabIndex >= tabs.size()) {
+    // Show the active browser's address once it changed, unless the user is typing in the field
+    private void updateUrlField() {
+        if (this.urlTextField == null || browser == null || this.urlTextField.isFocused()) {
             return;
         }
-
-        BrowserTab activeTab = tabs.get(activeTabIndex);
-        if (activeTab == null) {
+        PageState page = browser.getPageState();
+        if (browser == this.urlFieldBrowser && page.version() == this.urlFieldPageVersion) {
             return;
         }
+        this.urlFieldBrowser = browser;
+        this.urlFieldPageVersion = page.version();
+        String url = page.url();
+        if (!url.isEmpty() && !url.equals("about:blank") && !url.equals(this.urlTextField.getValue())) {
+            this.urlTextField.setValue(url);
+            // Set cursor to beginning so long URLs show the domain first
+            this.urlTextField.moveCursorToStart(false);
+        }
+    }
 
-        // Update tab title based on current URL, or default to "Tab X"
-        String newTitle;
-        if (browser != null) {
-            String url = browser.getURL();
-            if (url != null && !url.isEmpty() && !url.equals("about:blank")) {
-                newTitle = extractDomainFromUrl(url);
-            } else {
-                newTitle = "Tab " + (activeTabIndex + 1);
+    private void updateTabTitles() {
+        for (int i = 0; i < tabs.size(); i++) {
+            BrowserTab tab = tabs.get(i);
+            ManagedBrowser tabBrowser = tab.browserWidget != null ? tab.browserWidget.browser : null;
+            if (tabBrowser == null) {
+                // Queued or discarded tabs keep the title they have
+                continue;
+            }
+            PageState page = tabBrowser.getPageState();
+            if (tabBrowser == tab.shownBrowser && page.version() == tab.shownPageVersion) {
+                continue;
+            }
+            tab.shownBrowser = tabBrowser;
+            tab.shownPageVersion = page.version();
+            String newTitle = tabTitle(page, i);
+            if (!newTitle.equals(tab.title)) {
+                tab.title = newTitle;
+                if (tab.tabButton != null) {
+                    tab.tabButton.setMessage(Component.literal(newTitle));
+                }
             }
-        } else {
-            newTitle = "Tab " + (activeTabIndex + 1);
         }
+    }
 
-        // Only update if the title has changed
-        if (!newTitle.equals(activeTab.title)) {
-            activeTab.title = newTitle;
-            if (activeTab.tabButton != null) {
-                activeTab.tabButton.setMessage(Component.literal(newTitle));
-            }
+    // The page title, or the site while the page has none yet
+    private String tabTitle(PageState page, int tabIndex) {
+        if (!page.title().isEmpty() && !page.title().equals(page.url())) {
+            return page.title();
+        }
+        String url = page.url();
+        if (url.isEmpty() || url.equals("about:blank")) {
+            return page.loading() ? "Loading..." : "Tab " + (tabIndex + 1);
         }
+        return extractDomainFromUrl(url);
     }
 
     @Override
@@ -797,7 +996,7 @@ public class BrowserScreen extends Screen {
         // Otherwise send to browser if inside browser area
         if (!handled && isInBrowserArea(event.x(), event.y()) && browser != null) {
 
-            browser.sendMousePress(mouseX(event.x()), mouseY(event.y()), event.button());
+            browser.getInputQueue().mousePress(mouseX(event.x()), mouseY(event.y()), event.button());
             browser.setFocus(true);
         }
 
@@ -809,7 +1008,7 @@ public class BrowserScreen extends Screen {
         boolean handled = super.mouseReleased(event);
 
         if (!handled && isInBrowserArea(event.x(), event.y()) && browser != null) {
-            browser.sendMouseRelease(mouseX(event.x()), mouseY(event.y()), event.button());
+            browser.getInputQueue().mouseRelease(mouseX(event.x()), mouseY(event.y()), event.button());
             browser.setFocus(true);
         }
 
@@ -819,7 +1018,8 @@ public class BrowserScreen extends Screen {
     @Override
     public void mouseMoved(double mouseX, double mouseY) {
         if (isInBrowserArea(mouseX, mouseY) && browser != null) {
-            browser.sendMouseMove(mouseX(mouseX), mouseY(mouseY));
+            // Collapsed with the other moves of this frame
+            browser.getInputQueue().mouseMove(mouseX(mouseX), mouseY(mouseY));
         }
         super.mouseMoved(mouseX, mouseY);
     }
@@ -835,7 +1035,7 @@ public class BrowserScreen extends Screen {
     @Override
     public boolean mouseScrolled(double mouseX, double mouseY, double scrollX, double scrollY) {
         if (isInBrowserArea(mouseX, mouseY) && browser != null) {
-            browser.sendMouseWheel(mouseX(mouseX), mouseY(mouseY), scrollY, 0);
+            browser.getInputQueue().mouseWheel(mouseX(mouseX), mouseY(mouseY), scrollY, 0);
             return true;
         }
         return super.mouseScrolled(mouseX, mouseY, mouseX, scrollY);
@@ -862,8 +1062,17 @@ public class BrowserScreen extends Screen {
             if (handled) return true;
         }
 
+        if (browser != null && BrowserInputQueue.isPasteShortcut(event.key(), event.modifiers())) {
+            // The whole clipboard in one call instead of a key event per character
+            browser.getInputQueue().paste(Minecraft.getInstance().keyboardHandler.getClipboard(),
+                    event.key(), event.scancode(), event.modifiers());
+            browser.setFocus(true);
+            return true;
+        }
+
         if (browser != null) {
-            browser.sendKeyPress(event.key(), event.scancode(), event.modifiers());
+            // Text keys wait for the frame's flush with their characters, other keys go out right away
+            browser.getInputQueue().keyPress(event.key(), event.scancode(), event.modifiers());
             browser.setFocus(true);
         }
 
@@ -879,7 +1088,7 @@ public class BrowserScreen extends Screen {
         }
 
         if (browser != null) {
-            browser.sendKeyRelease(event.key(), event.scancode(), event.modifiers());
+            browser.getInputQueue().keyRelease(event.key(), event.scancode(), event.modifiers());
             browser.setFocus(true);
         }
 
@@ -894,8 +1103,12 @@ public class BrowserScreen extends Screen {
         }
 
         if (event.codepoint() == (char)0) return false;
-        browser.sendKeyTyped((char)event.codepoint(), event.modifiers());
-        browser.setFocus(true);
+        // The browser may still be queued with the BrowserManager
+        if (browser != null) {
+            // Buffered until the end of the frame, bursts are inserted in one go
+            browser.getInputQueue().charTyped(event.codepoint(), event.modifiers());
+            browser.setFocus(true);
+        }
         return super.charTyped(event);
     }
 
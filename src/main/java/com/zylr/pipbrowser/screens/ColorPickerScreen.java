@@ -1,12 +1,17 @@
 package com.zylr.pipbrowser.screens;
 
+import com.mojang.blaze3d.platform.NativeImage;
+import com.zylr.pipbrowser.PIPBrowser;
 import com.zylr.pipbrowser.widgets.Widget;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.gui.components.Button;
 import net.minecraft.client.gui.screens.Screen;
 import net.minecraft.client.input.MouseButtonEvent;
+import net.minecraft.client.renderer.RenderPipelines;
+import net.minecraft.client.renderer.texture.DynamicTexture;
 import net.minecraft.network.chat.Component;
+import net.minecraft.resources.ResourceLocation;
 import net.minecraft.util.Mth;
 
 import java.awt.*;
@@ -33,6 +38,43 @@ public class ColorPickerScreen extends Screen {
     private float saturation = 1.0f;
     private float brightness = 1.0f;
 
+    // Gradients are baked into textures and only rebuilt when the values they depend on change
+    private static final int GRADIENT_WIDTH = 200;
+    private static final int SB_HEIGHT = 40;
+    private static final int SLIDER_HEIGHT = 10;
+    private static final ResourceLocation HUE_TEXTURE = id("color_picker/hue");
+    private static final ResourceLocation SB_TEXTURE = id("color_picker/saturation_brightness");
+    private static final ResourceLocation RED_TEXTURE = id("color_picker/red");
+    private static final ResourceLocation GREEN_TEXTURE = id("color_picker/green");
+    private static final ResourceLocation BLUE_TEXTURE = id("color_picker/blue");
+    private static final ResourceLocation ALPHA_TEXTURE = id("color_picker/alpha");
+
+    // Fully saturated, full brightness red/green/blue (0..1) per hue step, see hsbToArgb
+    private static final int HUE_STEPS = 1024;
+    private static final float[] HUE_RED = new float[HUE_STEPS];
+    private static final float[] HUE_GREEN = new float[HUE_STEPS];
+    private static final float[] HUE_BLUE = new float[HUE_STEPS];
+
+    static {
+        for (int i = 0; i < HUE_STEPS; i++) {
+            int rgb = Color.HSBtoRGB((float) i / HUE_STEPS, 1.0f, 1.0f);
+            HUE_RED[i] = ((rgb >> 16) & 0xFF) / 255.0f;
+            HUE_GREEN[i] = ((rgb >> 8) & 0xFF) / 255.0f;
+            HUE_BLUE[i] = (rgb & 0xFF) / 255.0f;
+        }
+    }
+
+    private DynamicTexture hueTexture;
+    private DynamicTexture sbTexture;
+    private DynamicTexture redTexture;
+    private DynamicTexture greenTexture;
+    private DynamicTexture blueTexture;
+    private DynamicTexture alphaTexture;
+    private float bakedHue = Float.NaN;
+    private int bakedRed = -1;
+    private int bakedGreen = -1;
+    private int bakedBlue = -1;
+
     public ColorPickerScreen(Widget widget, Screen parentScreen) {
         super(Component.literal("Color Picker"));
         this.widget = widget;
@@ -96,8 +138,10 @@ public class ColorPickerScreen extends Screen {
         // Title
         gui.drawCenteredString(mc.font, "Color Picker", centerX, centerY - 140, 0xFFFFFF);
 
+        updateGradientTextures();
+
         // Color preview
-        int previewColor = new Color(selectedRed, selectedGreen, selectedBlue, selectedAlpha).getRGB();
+        int previewColor = argb(selectedAlpha, selectedRed, selectedGreen, selectedBlue);
         gui.fill(centerX - 51, centerY - 121, centerX + 51, centerY - 89, 0xFFFFFFFF); // Border
         gui.fill(centerX - 50, centerY - 120, centerX + 50, centerY - 90, previewColor);
 
@@ -123,25 +167,14 @@ public class ColorPickerScreen extends Screen {
 
     private void drawColorWheel(GuiGraphics gui, int x, int y, int width, int height) {
         // Hue bar
-        for (int i = 0; i < width; i++) {
-            float h = (float) i / width;
-            Color color = Color.getHSBColor(h, 1.0f, 1.0f);
-            gui.fill(x + i, y, x + i + 1, y + 20, color.getRGB());
-        }
+        blitGradient(gui, HUE_TEXTURE, x, y, width, 20, 1);
 
         // Hue selector
         int hueX = x + (int) (hue * width);
         gui.fill(hueX - 1, y - 2, hueX + 1, y + 22, 0xFFFFFFFF);
 
         // Saturation/Brightness area
-        for (int i = 0; i < width; i++) {
-            for (int j = 0; j < 40; j++) {
-                float s = (float) i / width;
-                float b = 1.0f - (float) j / 40;
-                Color color = Color.getHSBColor(hue, s, b);
-                gui.fill(x + i, y + 25 + j, x + i + 1, y + 26 + j, color.getRGB());
-            }
-        }
+        blitGradient(gui, SB_TEXTURE, x, y + 25, width, SB_HEIGHT, SB_HEIGHT);
 
         // Saturation/Brightness selector
         int satX = x + (int) (saturation * width);
@@ -155,33 +188,21 @@ public class ColorPickerScreen extends Screen {
         int sliderHeight = 10;
 
         // Red slider
-        for (int i = 0; i < sliderWidth; i++) {
-            int red = (int) ((float) i / sliderWidth * 255);
-            Color color = new Color(red, selectedGreen, selectedBlue);
-            gui.fill(centerX - 100 + i, sliderY, centerX - 100 + i + 1, sliderY + sliderHeight, color.getRGB());
-        }
+        blitGradient(gui, RED_TEXTURE, centerX - 100, sliderY, sliderWidth, sliderHeight, 1);
         int redX = centerX - 100 + (int) ((float) selectedRed / 255 * sliderWidth);
         gui.fill(redX - 1, sliderY - 2, redX + 1, sliderY + sliderHeight + 2, 0xFFFFFFFF);
         gui.drawString(mc.font, "R", centerX - 115, sliderY + 1, 0xFFFFFF);
 
         // Green slider
         sliderY += 15;
-        for (int i = 0; i < sliderWidth; i++) {
-            int green = (int) ((float) i / sliderWidth * 255);
-            Color color = new Color(selectedRed, green, selectedBlue);
-            gui.fill(centerX - 100 + i, sliderY, centerX - 100 + i + 1, sliderY + sliderHeight, color.getRGB());
-        }
+        blitGradient(gui, GREEN_TEXTURE, centerX - 100, sliderY, sliderWidth, sliderHeight, 1);
         int greenX = centerX - 100 + (int) ((float) selectedGreen / 255 * sliderWidth);
         gui.fill(greenX - 1, sliderY - 2, greenX + 1, sliderY + sliderHeight + 2, 0xFFFFFFFF);
         gui.drawString(mc.font, "G", centerX - 115, sliderY + 1, 0xFFFFFF);
 
         // Blue slider
         sliderY += 15;
-        for (int i = 0; i < sliderWidth; i++) {
-            int blue = (int) ((float) i / sliderWidth * 255);
-            Color color = new Color(selectedRed, selectedGreen, blue);
-            gui.fill(centerX - 100 + i, sliderY, centerX - 100 + i + 1, sliderY + sliderHeight, color.getRGB());
-        }
+        blitGradient(gui, BLUE_TEXTURE, centerX - 100, sliderY, sliderWidth, sliderHeight, 1);
         int blueX = centerX - 100 + (int) ((float) selectedBlue / 255 * sliderWidth);
         gui.fill(blueX - 1, sliderY - 2, blueX + 1, sliderY + sliderHeight + 2, 0xFFFFFFFF);
         gui.drawString(mc.font, "B", centerX - 115, sliderY + 1, 0xFFFFFF);
@@ -191,27 +212,145 @@ public class ColorPickerScreen extends Screen {
         int sliderWidth = 200;
         int sliderHeight = 10;
 
-        // Checkerboard background for alpha
-        for (int i = 0; i < sliderWidth; i += 8) {
-            for (int j = 0; j < sliderHeight; j += 8) {
-                Color checker = ((i + j) % 16 == 0) ? Color.WHITE : Color.LIGHT_GRAY;
-                gui.fill(centerX - 100 + i, centerY + j,
-                        centerX - 100 + Math.min(i + 8, sliderWidth),
-                        centerY + Math.min(j + 8, sliderHeight),
-                        checker.getRGB());
+        // Alpha gradient, baked on top of its checkerboard background
+        blitGradient(gui, ALPHA_TEXTURE, centerX - 100, centerY, sliderWidth, sliderHeight, SLIDER_HEIGHT);
+
+        int alphaX = centerX - 100 + (int) ((float) selectedAlpha / 255 * sliderWidth);
+        gui.fill(alphaX - 1, centerY - 2, alphaX + 1, centerY + sliderHeight + 2, 0xFFFFFFFF);
+        gui.drawString(mc.font, "A", centerX - 115, centerY + 1, 0xFFFFFF);
+    }
+
+    private void blitGradient(GuiGraphics gui, ResourceLocation texture, int x, int y, int width, int height, int textureHeight) {
+        // Textures are GRADIENT_WIDTH wide and stretched vertically when they only hold one row
+        gui.blit(RenderPipelines.GUI_TEXTURED, texture, x, y, 0, 0, width, height,
+                GRADIENT_WIDTH, textureHeight, GRADIENT_WIDTH, textureHeight);
+    }
+
+    /**
+     * Create the gradient textures on first use and rebake the ones whose inputs changed.
+     */
+    private void updateGradientTextures() {
+        if (hueTexture == null) {
+            hueTexture = createTexture(HUE_TEXTURE, 1);
+            sbTexture = createTexture(SB_TEXTURE, SB_HEIGHT);
+            redTexture = createTexture(RED_TEXTURE, 1);
+            greenTexture = createTexture(GREEN_TEXTURE, 1);
+            blueTexture = createTexture(BLUE_TEXTURE, 1);
+            alphaTexture = createTexture(ALPHA_TEXTURE, SLIDER_HEIGHT);
+
+            NativeImage pixels = hueTexture.getPixels();
+            for (int i = 0; i < GRADIENT_WIDTH; i++) {
+                pixels.setPixel(i, 0, hsbToArgb((float) i / GRADIENT_WIDTH, 1.0f, 1.0f));
             }
+            hueTexture.upload();
         }
 
-        // Alpha gradient
-        for (int i = 0; i < sliderWidth; i++) {
-            int alpha = (int) ((float) i / sliderWidth * 255);
-            Color color = new Color(selectedRed, selectedGreen, selectedBlue, alpha);
-            gui.fill(centerX - 100 + i, centerY, centerX - 100 + i + 1, centerY + sliderHeight, color.getRGB());
+        if (hue != bakedHue) {
+            bakedHue = hue;
+            NativeImage pixels = sbTexture.getPixels();
+            for (int j = 0; j < SB_HEIGHT; j++) {
+                float b = 1.0f - (float) j / SB_HEIGHT;
+                for (int i = 0; i < GRADIENT_WIDTH; i++) {
+                    pixels.setPixel(i, j, hsbToArgb(hue, (float) i / GRADIENT_WIDTH, b));
+                }
+            }
+            sbTexture.upload();
         }
 
-        int alphaX = centerX - 100 + (int) ((float) selectedAlpha / 255 * sliderWidth);
-        gui.fill(alphaX - 1, centerY - 2, alphaX + 1, centerY + sliderHeight + 2, 0xFFFFFFFF);
-        gui.drawString(mc.font, "A", centerX - 115, centerY + 1, 0xFFFFFF);
+        boolean redChanged = selectedRed != bakedRed;
+        boolean greenChanged = selectedGreen != bakedGreen;
+        boolean blueChanged = selectedBlue != bakedBlue;
+        if (!redChanged && !greenChanged && !blueChanged) {
+            return;
+        }
+        bakedRed = selectedRed;
+        bakedGreen = selectedGreen;
+        bakedBlue = selectedBlue;
+
+        // Each RGB slider only depends on the other two channels
+        if (greenChanged || blueChanged) {
+            NativeImage pixels = redTexture.getPixels();
+            for (int i = 0; i < GRADIENT_WIDTH; i++) {
+                pixels.setPixel(i, 0, argb(255, i * 255 / GRADIENT_WIDTH, selectedGreen, selectedBlue));
+            }
+            redTexture.upload();
+        }
+        if (redChanged || blueChanged) {
+            NativeImage pixels = greenTexture.getPixels();
+            for (int i = 0; i < GRADIENT_WIDTH; i++) {
+                pixels.setPixel(i, 0, argb(255, selectedRed, i * 255 / GRADIENT_WIDTH, selectedBlue));
+            }
+            greenTexture.upload();
+        }
+        if (redChanged || greenChanged) {
+            NativeImage pixels = blueTexture.getPixels();
+            for (int i = 0; i < GRADIENT_WIDTH; i++) {
+                pixels.setPixel(i, 0, argb(255, selectedRed, selectedGreen, i * 255 / GRADIENT_WIDTH));
+            }
+            blueTexture.upload();
+        }
+
+        // Alpha slider: color blended over an 8px white / light gray checkerboard
+        NativeImage pixels = alphaTexture.getPixels();
+        for (int j = 0; j < SLIDER_HEIGHT; j++) {
+            for (int i = 0; i < GRADIENT_WIDTH; i++) {
+                int checker = ((i / 8 + j / 8) % 2 == 0) ? 255 : 192;
+                int alpha = i * 255 / GRADIENT_WIDTH;
+                pixels.setPixel(i, j, argb(255,
+                        blend(checker, selectedRed, alpha),
+                        blend(checker, selectedGreen, alpha),
+                        blend(checker, selectedBlue, alpha)));
+            }
+        }
+        alphaTexture.upload();
+    }
+
+    private DynamicTexture createTexture(ResourceLocation location, int height) {
+        DynamicTexture texture = new DynamicTexture(location::toString, GRADIENT_WIDTH, height, false);
+        mc.getTextureManager().register(location, texture);
+        return texture;
+    }
+
+    @Override
+    public void removed() {
+        super.removed();
+        if (hueTexture != null) {
+            // Releasing through the texture manager also closes the textures
+            mc.getTextureManager().release(HUE_TEXTURE);
+            mc.getTextureManager().release(SB_TEXTURE);
+            mc.getTextureManager().release(RED_TEXTURE);
+            mc.getTextureManager().release(GREEN_TEXTURE);
+            mc.getTextureManager().release(BLUE_TEXTURE);
+            mc.getTextureManager().release(ALPHA_TEXTURE);
+            hueTexture = null;
+            bakedHue = Float.NaN;
+            bakedRed = bakedGreen = bakedBlue = -1;
+        }
+    }
+
+    /**
+     * HSB to packed ARGB without allocating: every channel is brightness * (1 - saturation * (1 - c))
+     * where c is the channel of the fully saturated hue, looked up in a table.
+     */
+    private static int hsbToArgb(float h, float s, float b) {
+        int index = ((int) (h * HUE_STEPS)) % HUE_STEPS;
+        if (index < 0) index += HUE_STEPS;
+        int red = (int) (b * (1.0f - s * (1.0f - HUE_RED[index])) * 255.0f + 0.5f);
+        int green = (int) (b * (1.0f - s * (1.0f - HUE_GREEN[index])) * 255.0f + 0.5f);
+        int blue = (int) (b * (1.0f - s * (1.0f - HUE_BLUE[index])) * 255.0f + 0.5f);
+        return argb(255, red, green, blue);
+    }
+
+    private static int argb(int a, int r, int g, int b) {
+        return (a & 0xFF) << 24 | (r & 0xFF) << 16 | (g & 0xFF) << 8 | (b & 0xFF);
+    }
+
+    private static int blend(int background, int foreground, int alpha) {
+        return (foreground * alpha + background * (255 - alpha)) / 255;
+    }
+
+    private static ResourceLocation id(String path) {
+        return ResourceLocation.fromNamespaceAndPath(PIPBrowser.MODID, path);
     }
 
     @Override
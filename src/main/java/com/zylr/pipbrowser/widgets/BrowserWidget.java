@@ -1,27 +1,74 @@
 package com.zylr.pipbrowser.widgets;
 
-import com.cinemamod.mcef.MCEF;
-import com.cinemamod.mcef.MCEFBrowser;
+import com.zylr.pipbrowser.Config;
 import com.zylr.pipbrowser.PIPBrowser;
+import com.zylr.pipbrowser.browser.BrowserInputQueue;
+import com.zylr.pipbrowser.browser.BrowserManager;
+import com.zylr.pipbrowser.browser.BrowserSurface;
+import com.zylr.pipbrowser.browser.BrowserTexture;
+import com.zylr.pipbrowser.browser.DiscardedBrowser;
+import com.zylr.pipbrowser.browser.ManagedBrowser;
+import com.zylr.pipbrowser.browser.ResizeController;
+import com.zylr.pipbrowser.browser.ResolutionGovernor;
+import com.zylr.pipbrowser.mixin.GuiGraphicsAccessor;
+import com.zylr.pipbrowser.render.FrameCounter;
+import com.zylr.pipbrowser.render.HudCompositor;
+import com.zylr.pipbrowser.render.OcclusionTracker;
+import com.zylr.pipbrowser.render.RoundedBrowserRenderState;
 import com.zylr.pipbrowser.screens.BrowserScreen;
 import com.zylr.pipbrowser.properties.MainProperties;
+import com.mojang.blaze3d.platform.Window;
 import net.minecraft.client.Minecraft;
+import com.mojang.blaze3d.platform.NativeImage;
 import net.minecraft.client.gui.GuiGraphics;
+import net.minecraft.client.renderer.texture.DynamicTexture;
+import net.minecraft.resources.ResourceLocation;
 import net.minecraft.client.renderer.RenderPipelines;
 
-import java.awt.*;
 import java.util.Properties;
 
 public class BrowserWidget extends Widget {
     // Use BrowserScreen.BROWSER_DRAW_OFFSET as the single source of truth for where
     // the fullscreen browser texture should start (below tabs + nav bar).
-    public MCEFBrowser browser;
+    public ManagedBrowser browser;
+    private ResizeController resizeController;
+    private final ResolutionGovernor resolutionGovernor = new ResolutionGovernor();
     private boolean initialized = false;
     private String currentUrl;
     private String initialUrl;
     private float opacity = 0.8f; // 80% opacity (20% transparent)
+    private static final int BORDER_THICKNESS = 2;
+    private static final int CORNER_RADIUS = 5;
+    private static final String PAUSE_MEDIA_SCRIPT =
+            "var videos = document.querySelectorAll('video'); " +
+                    "for(var i = 0; i < videos.length; i++) { videos[i].pause(); } " +
+                    "var audios = document.querySelectorAll('audio'); " +
+                    "for(var i = 0; i < audios.length; i++) { audios[i].pause(); }";
+    private BrowserSurface surface = BrowserSurface.HUD;
+    private static int nextThumbnailId = 0;
+    private DiscardedBrowser discarded;
+    private DynamicTexture thumbnailTexture;
+    private ResourceLocation thumbnailLocation;
+    private long lastRenderedFrame = -1;
+    // Set while the HUD pass offers its cached composite
+    private HudCompositor compositor;
+    // Texture sequence at the previous draw, a browser that painted since then skips the composite
+    private final RoundedBrowserRenderState roundedState = new RoundedBrowserRenderState();
+    // Queued with the BrowserManager, the widget draws its placeholder until the browser arrives
+    private BrowserManager.Request pendingBrowser;
 
     public BrowserWidget(int x, int y, int width, int height, String initialUrl) {
+        this(x, y, width, height, initialUrl, null);
+    }
+
+    /**
+     * A tab that has no browser yet; it is created from {@code saved} on {@link #restore()}.
+     */
+    public static BrowserWidget placeholder(int x, int y, int width, int height, DiscardedBrowser saved) {
+        return new BrowserWidget(x, y, width, height, saved.url(), saved);
+    }
+
+    private BrowserWidget(int x, int y, int width, int height, String initialUrl, DiscardedBrowser placeholder) {
         this.anchorX = x;
         this.anchorY = y;
         this.widgetWidth = width;
@@ -32,7 +79,11 @@ public class BrowserWidget extends Widget {
         this.setupConfig();
         this.initialUrl = initialUrl;
 
-        initializeBrowser();
+        if (placeholder == null) {
+            initializeBrowser();
+        } else {
+            this.discarded = placeholder;
+        }
 
         this.relativeAnchorx = Double.parseDouble(config.getProperty("x", "0"));
         this.relativeAnchorY = Double.parseDouble(config.getProperty("y", "0"));
@@ -41,32 +92,63 @@ public class BrowserWidget extends Widget {
         this.setWidthPercent(Double.parseDouble(config.getProperty("width", "0")));
         this.setHeightPercent(Double.parseDouble(config.getProperty("height", "0")));
         this.backgroundColor = Integer.parseInt(config.getProperty("backgroundColor", "-1"));
+        this.resolutionGovernor.configure(config);
+        // Resolve the configured size now so the first browser resolution matches it
+        this.updateLayout();
+        configureBrowser();
     }
 
-    private void initializeBrowser() {
+    // Position and size stay where the user put this widget; colors, caps and budgets follow the file
+    @Override
+    protected void onConfigReloaded() {
         try {
-            if (MCEF.isInitialized()) {
-                PIPBrowser.LOGGER.info("MCEF browser initializing");
-                // Create browser with transparency enabled
-                browser = MCEF.createBrowser(this.initialUrl, true);
-
-                // Set initial size to 1920x1080 for consistent HUD display
-                // The texture will be scaled to fit the widget dimensions (267x150)
-                try {
-                    browser.resize(1920, 1080);
-                    PIPBrowser.LOGGER.info("Initialized browser at 1920x1080");
-                } catch (Exception resizeError) {
-                    PIPBrowser.LOGGER.warn("Could not resize browser immediately: {}", resizeError.getMessage());
-                    // Browser will be resized later by BrowserScreen
-                }
+            this.backgroundColor = Integer.parseInt(config.getProperty("backgroundColor", "-1").trim());
+        } catch (NumberFormatException e) {
+            PIPBrowser.LOGGER.warn("Invalid browser widget config: {}", e.getMessage());
+        }
+        this.resolutionGovernor.configure(config);
+        if (this.browser != null) {
+            // The resolution follows on the next HUD frame
+            applySurfaceState();
+        }
+    }
 
-                initialized = true;
-            } else {
-                PIPBrowser.LOGGER.warn("MCEF not initialized");
+    private void configureBrowser() {
+        applySurfaceState();
+
+        // Start painting at the size the HUD will actually show
+        applyHudResolution();
+    }
+
+    private void initializeBrowser() {
+        if (pendingBrowser != null) {
+            return;
+        }
+        PIPBrowser.LOGGER.debug("Queueing browser for {}", this.initialUrl);
+        // Created with transparency enabled on a later client tick, BrowserManager waits for MCEF if needed
+        pendingBrowser = BrowserManager.create(this.initialUrl, true, this::onBrowserCreated);
+    }
+
+    private void onBrowserCreated(ManagedBrowser created) {
+        pendingBrowser = null;
+        browser = created;
+        resizeController = new ResizeController(browser);
+        initialized = true;
+        if (discarded != null) {
+            // Rebuilt tab: back to where it was scrolled, the thumbnail (if any) stays until the first paint
+            browser.restoreScroll(discarded.scrollX(), discarded.scrollY());
+            if (thumbnailTexture == null) {
+                discarded = null;
             }
-        } catch (Exception e) {
-            PIPBrowser.LOGGER.error("Failed to initialize MCEF browser: {}", e.getMessage(), e);
         }
+        configureBrowser();
+    }
+
+    /**
+     * True while the browser is queued but not created yet.
+     */
+    public boolean isLoading() {
+        return pendingBrowser != null;
     }
 
     public void loadURL(String url) {
@@ -76,248 +158,301 @@ public class BrowserWidget extends Widget {
         }
     }
 
-    public void navigateToGoogle() {
-        loadURL("https://www.google.com");
+    /**
+     * Go to {@code url} whatever state the widget is in: a live browser navigates, a queued or
+     * discarded one is (re)created at {@code url} instead of its old page, so the page loads once.
+     */
+    public void navigate(String url) {
+        if (browser != null && initialized) {
+            loadURL(url);
+            return;
+        }
+        if (pendingBrowser != null) {
+            pendingBrowser.cancel();
+            pendingBrowser = null;
+        }
+        // The old page's thumbnail and scroll position do not apply to the new one
+        releaseThumbnail();
+        this.initialUrl = url;
+        this.currentUrl = url;
+        initializeBrowser();
     }
 
-    public void navigateToYouTube() {
-        loadURL("https://www.youtube.com");
+    /**
+     * The page this widget shows, or the one its browser will be created at if it has none yet.
+     */
+    public String getPageUrl() {
+        if (browser != null) {
+            String url = browser.getPageState().url();
+            if (!url.isEmpty()) {
+                return url;
+            }
+        }
+        if (discarded != null) {
+            return discarded.url();
+        }
+        return initialUrl;
     }
 
-    public void navigateToGitHub() {
-        loadURL("https://www.github.com");
+    /**
+     * The page this widget was last sent to (opened with, typed in or followed from a link),
+     * whereas {@link #getPageUrl()} follows the page wherever it navigated since.
+     */
+    public String getOpenedUrl() {
+        if (currentUrl != null) {
+            return currentUrl;
+        }
+        if (initialUrl != null) {
+            return initialUrl;
+        }
+        return discarded != null ? discarded.url() : null;
     }
 
-    private static float clamp(float v, float lo, float hi) {
-        return v < lo ? lo : (v > hi ? hi : v);
+    public boolean isPlayingMedia() {
+        return browser != null && browser.isPlayingMedia();
     }
 
     /**
-     * Compute browser texture resolution so that:
-     * - at widget 267x150 -> 1280x720
-     * - at widget fullscreen (screenW x screenH) -> 1920x1080
-     * Uses width-based linear interpolation.
+     * True when replacing the page stops nothing: no audible media playing and no load in progress.
+     * A queued or discarded browser runs nothing yet.
      */
-    public static Dimension computeBrowserResolution(int widgetW, int widgetH, int screenW, int screenH) {
-        final float minWidgetW = 267f;
-        final float minResW = 1280f;
-        final float maxResW = 1920f;
+    public boolean isIdle() {
+        return browser == null || (!browser.isPlayingMedia() && !browser.getPageState().loading());
+    }
 
-        float denom = Math.max(1f, screenW - minWidgetW);
-        float t = clamp((widgetW - minWidgetW) / denom, 0f, 1f);
+    public void navigateToGoogle() {
+        loadURL("https://www.google.com");
+    }
 
-        float aspectRatio = (float) widgetW / (float) widgetH;
+    public void navigateToYouTube() {
+        loadURL("https://www.youtube.com");
+    }
 
-        int resW = Math.round(minResW + t * (maxResW - minResW)); // 1280 -> 1920
-        int resH = Math.round(resW / aspectRatio);
+    public void navigateToGitHub() {
+        loadURL("https://www.github.com");
+    }
 
-        return new Dimension(resW, resH);
+    /**
+     * Size the browser for the HUD: the texture matches the framebuffer pixels the widget
+     * covers (times the configured oversampling) and the device scale factor keeps a desktop layout.
+     */
+    private void applyHudResolution() {
+        if (resizeController == null) {
+            return;
+        }
+        int innerWidth = this.widgetWidth - BORDER_THICKNESS * 2;
+        int innerHeight = this.widgetHeight - BORDER_THICKNESS * 2;
+        resolutionGovernor.compute(innerWidth, innerHeight, Minecraft.getInstance().getWindow().getGuiScale());
+        resizeController.request(resolutionGovernor.getViewWidth(), resolutionGovernor.getViewHeight(),
+                resolutionGovernor.getScaleFactor());
     }
 
     @Override
     public void render(GuiGraphics gui) {
+        renderBelow(gui, 0, 0, 0, 0);
+    }
+
+    /**
+     * Render on the HUD, queueing the rounded browser quad on the compositor's cached layer.
+     */
+    public void render(GuiGraphics gui, HudCompositor compositor) {
+        this.compositor = compositor;
+        try {
+            renderBelow(gui, 0, 0, 0, 0);
+        } finally {
+            this.compositor = null;
+        }
+    }
+
+    /**
+     * Render the widget underneath an opaque rectangle (e.g. a container background). If the
+     * rectangle hides the whole widget the blit is skipped and CEF stops painting until it shows again.
+     */
+    public void renderBelow(GuiGraphics gui, int coverX, int coverY, int coverWidth, int coverHeight) {
         if (!this.isVisible())
             return;
+        // A browser texture is drawn at most once per frame, whichever path gets to it first
+        long frame = FrameCounter.getFrame();
+        if (frame == this.lastRenderedFrame)
+            return;
+        this.lastRenderedFrame = frame;
         if (this.browser != null) {
-            this.fixAnchors();
-            this.anchorX = this.getAnchorXFromRelative(this.getRelativeAnchorX());
-            this.anchorY = this.getAnchorYFromRelative(this.getRelativeAnchorY());
-            if (widthPercent > 0 && heightPercent > 0) {
-                this.widgetWidth = (int) (this.widthPercent * Minecraft.getInstance().getWindow().getGuiScaledWidth());
-                this.widgetHeight = (int) (this.heightPercent * Minecraft.getInstance().getWindow().getGuiScaledHeight());
-                if (this.widgetWidth > Minecraft.getInstance().getWindow().getGuiScaledWidth())
-                    this.widgetWidth = Minecraft.getInstance().getWindow().getGuiScaledWidth();
-                if (this.widgetHeight > Minecraft.getInstance().getWindow().getGuiScaledHeight())
-                    this.widgetHeight = Minecraft.getInstance().getWindow().getGuiScaledHeight();
+            // Called every frame: look the window and screen up once and keep everything in primitives
+            Minecraft minecraft = Minecraft.getInstance();
+            Window window = minecraft.getWindow();
+            int guiWidth = window.getGuiScaledWidth();
+            int guiHeight = window.getGuiScaledHeight();
+            boolean fullscreen = minecraft.screen instanceof BrowserScreen;
+
+            // No-op unless the widget was moved, resized or the GUI size changed
+            this.updateLayout();
+
+            int screenLeft = this.getLeftSide();
+            int screenTop = this.getTop();
+            int screenWidth = this.widgetWidth;
+            int screenHeight = this.widgetHeight;
+            int screenBorderThickness = BORDER_THICKNESS;
+            int screenCornerRadius = CORNER_RADIUS;
+
+            // Rows of a large paint that did not fit into the previous frame's upload budget
+            browser.drainUploads();
+            // Mouse moves and wheel ticks collected since the last frame
+            browser.getInputQueue().flush();
+
+            if (!fullscreen) {
+                boolean occluded = OcclusionTracker.isOccluded(screenLeft, screenTop, screenWidth, screenHeight,
+                        backgroundColor, coverX, coverY, coverWidth, coverHeight);
+                browser.setPaintingPaused(occluded);
+                if (occluded) {
+                    // Hidden: skip only the draw, the input and pending uploads above still went out
+                    return;
+                }
+                // Only reaches CEF when the computed size changes and no resize drag is in progress
+                applyHudResolution();
+            } else {
+                browser.setPaintingPaused(false);
             }
-            // Get widget position in widget coordinates
-            float left = this.getLeftSide();
-            float top = this.getTop();
-
-            // Apply scale to convert widget coordinates to screen coordinates
-            // The border thickness and corner radius also scale
-            float borderThickness = 2.0f;
-            float cornerRadius = 5.0f;
-
-            // Calculate screen positions and sizes
-            int screenLeft = (int) (left);
-            int screenTop = (int) (top);
-            int screenWidth = (int) (this.widgetWidth);
-            int screenHeight = (int) (this.widgetHeight);
-            int screenBorderThickness = (int) (borderThickness);
-            int screenCornerRadius = (int) (cornerRadius);
-
-            Color color = new Color(backgroundColor, true);
-            Color browserColor = new Color(255, 255, 255, color.getAlpha());
 
             if (browser.isTextureReady()) {
-                if (Minecraft.getInstance().screen instanceof BrowserScreen) {
+                if (thumbnailTexture != null) {
+                    releaseThumbnail();
+                }
+                BrowserTexture texture = browser.getTexture();
+                if (fullscreen) {
                     // Draw the browser content in fullscreen mode using per-side insets
                     int leftInset = BrowserScreen.BROWSER_DRAW_LEFT;
                     int rightInset = BrowserScreen.BROWSER_DRAW_RIGHT;
                     int topInset = BrowserScreen.BROWSER_DRAW_TOP;
                     int bottomInset = BrowserScreen.BROWSER_DRAW_BOTTOM;
 
-                    int renderWidth = Minecraft.getInstance().getWindow().getGuiScaledWidth() - leftInset - rightInset;
-                    int renderHeight = Minecraft.getInstance().getWindow().getGuiScaledHeight() - topInset - bottomInset;
+                    int renderWidth = guiWidth - leftInset - rightInset;
+                    int renderHeight = guiHeight - topInset - bottomInset;
                     gui.blit(RenderPipelines.GUI_TEXTURED, browser.getTextureLocation(),
                             leftInset, topInset,
                             0, 0,
                             renderWidth, renderHeight,
-                            renderWidth, renderHeight);
+                            texture.getContentWidth(), texture.getContentHeight(),
+                            texture.getWidth(), texture.getHeight());
                 } else {
-                    Dimension browserRes = computeBrowserResolution(this.widgetWidth, this.widgetHeight,
-                            Minecraft.getInstance().getWindow().getGuiScaledWidth(),
-                            Minecraft.getInstance().getWindow().getGuiScaledHeight());
-                    int browserWidth = browserRes.width;
-                    int browserHeight = browserRes.height;
-                    browser.resize(browserWidth, browserHeight); // Scale up for better resolution
-
-                    // Draw the browser content inside the border
-                    // Position: border position + border thickness
-                    // Size: border size - 2 * border thickness
-                    gui.blit(RenderPipelines.GUI_TEXTURED, browser.getTextureLocation(),
-                            screenLeft + screenBorderThickness,
-                            screenTop + screenBorderThickness,
-                            0, 0,
-                            screenWidth - screenBorderThickness * 2,
-                            screenHeight - screenBorderThickness * 2,
-                            screenWidth - screenBorderThickness * 2,
-                            screenHeight - screenBorderThickness * 2,
-                            browserColor.getRGB());
+                    // Page, rounded clip, border and tint in a single quad
+                    drawRoundedBrowser(gui, texture, screenLeft, screenTop, screenWidth, screenHeight,
+                            screenCornerRadius, backgroundColor, screenBorderThickness);
                 }
+            } else if (thumbnailTexture != null) {
+                // Rebuilt tab that has not painted yet, show what it looked like when it was discarded
+                drawThumbnail(gui, screenLeft, screenTop, screenWidth, screenHeight, screenBorderThickness);
+            } else if (!fullscreen) {
+                // Nothing painted yet, just outline where the page will appear
+                drawBorder(gui, screenLeft, screenTop, screenWidth, screenHeight, backgroundColor, screenBorderThickness);
             }
-
-            // Draw rounded border (not in BrowserScreen)
-            if (!(Minecraft.getInstance().screen instanceof BrowserScreen)) {
-                // Draw border at the exact same position and size as calculated above
-                drawRoundedBorder(gui, screenLeft, screenTop, screenWidth, screenHeight,
-                        screenCornerRadius,
-                        backgroundColor,
-                        screenBorderThickness);
+        } else if (this.pendingBrowser != null) {
+            // Browser still queued with the manager: same placeholder as a browser that has not painted yet
+            this.updateLayout();
+            if (thumbnailTexture != null) {
+                drawThumbnail(gui, this.getLeftSide(), this.getTop(), this.widgetWidth, this.widgetHeight, BORDER_THICKNESS);
+            } else if (!(Minecraft.getInstance().screen instanceof BrowserScreen)) {
+                drawBorder(gui, this.getLeftSide(), this.getTop(), this.widgetWidth, this.widgetHeight, backgroundColor, BORDER_THICKNESS);
             }
         }
 
     }
 
-    private void drawRoundedBorder(GuiGraphics gui, int x, int y, int width, int height, int radius, int color, int thickness) {
-        int left = x;
-        int top = y;
-        int right = x + width;
-        int bottom = y + height;
-
-        // Ensure minimum thickness
+    /**
+     * Draws the browser texture inside a rounded border with one textured quad. The quad covers the
+     * whole widget; the shader clips the rounded corners and paints the border ring with a signed
+     * distance function, so the cost no longer depends on the radius.
+     */
+    private void drawRoundedBrowser(GuiGraphics gui, BrowserTexture texture, int x, int y, int width, int height,
+                                    int radius, int color, int thickness) {
         int thick = Math.max(1, thickness);
-
-        // Ensure radius is reasonable
-        int rad = Math.max(0, radius);
-        int maxRad = Math.min(width / 2, height / 2);
-        if (rad > maxRad) rad = maxRad;
-
+        int rad = Math.max(0, Math.min(radius, Math.min(width / 2, height / 2)));
         // Disable rounded corners at small scales (radius less than 4 pixels)
-        boolean useRoundedCorners = rad >= 4;
-
-        if (useRoundedCorners) {
-            // Draw the four rounded corners first
-            // Top-left corner
-            drawFilledCorner(gui, left + rad, top + rad, rad, thick, color, 2);
-            // Top-right corner
-            drawFilledCorner(gui, right - rad, top + rad, rad, thick, color, 1);
-            // Bottom-right corner
-            drawFilledCorner(gui, right - rad, bottom - rad, rad, thick, color, 0);
-            // Bottom-left corner
-            drawFilledCorner(gui, left + rad, bottom - rad, rad, thick, color, 3);
-
-            // Draw the four straight edges between the corners (avoiding overlap)
-            // Top edge - leave space for corners
-            gui.fill(left + rad + 1, top, right - rad, top + thick, color);
-            // Bottom edge - leave space for corners
-            gui.fill(left + rad + 1, bottom - thick, right - rad, bottom, color);
-            // Left edge - leave space for corners
-            gui.fill(left, top + rad + 1, left + thick, bottom - rad, color);
-            // Right edge - leave space for corners
-            gui.fill(right - thick, top + rad + 1, right, bottom - rad, color);
-        } else {
-            // Draw simple square border at small scales
-            // Top edge
-            gui.fill(left, top, right, top + thick, color);
-            // Bottom edge
-            gui.fill(left, bottom - thick, right, bottom, color);
-            // Left edge
-            gui.fill(left, top, left + thick, bottom, color);
-            // Right edge
-            gui.fill(right - thick, top, right, bottom, color);
+        if (rad < 4) {
+            rad = 0;
         }
-    }
 
-    /**
-     * Draws a filled quarter circle corner for the border
-     * @param quadrant 0=bottom-right, 1=top-right, 2=top-left, 3=bottom-left
-     */
-    private void drawFilledCorner(GuiGraphics gui, int cx, int cy, int radius, int thickness, int color, int quadrant) {
-        // For small radii, just draw a filled square corner
-        if (radius <= 2) {
-            int size = radius;
-            switch (quadrant) {
-                case 0: // bottom-right
-                    gui.fill(cx, cy, cx + size, cy + size, color);
-                    break;
-                case 1: // top-right
-                    gui.fill(cx, cy - size + 1, cx + size, cy + 1, color);
-                    break;
-                case 2: // top-left
-                    gui.fill(cx - size + 1, cy - size + 1, cx + 1, cy + 1, color);
-                    break;
-                case 3: // bottom-left
-                    gui.fill(cx - size + 1, cy, cx + 1, cy + size, color);
-                    break;
-            }
+        // The page fills the area inside the border; extend its UVs over the border so one quad covers both
+        int innerWidth = Math.max(1, width - thick * 2);
+        int innerHeight = Math.max(1, height - thick * 2);
+        float uMax = texture.getContentWidth() / (float) texture.getWidth();
+        float vMax = texture.getContentHeight() / (float) texture.getHeight();
+        float uPerUnit = uMax / innerWidth;
+        float vPerUnit = vMax / innerHeight;
+
+        if (this.compositor != null && this.compositor.add(gui, texture,
+                x, y, x + width, y + height,
+                -thick * uPerUnit, uMax + thick * uPerUnit,
+                -thick * vPerUnit, vMax + thick * vPerUnit,
+                color, rad, thick)) {
             return;
         }
+        // Refilled in place, the draw allocates nothing unless the texture or placement changed
+        ((GuiGraphicsAccessor) gui).getGuiRenderState().submitGuiElement(this.roundedState.set(
+                texture.getTextureView(), gui.pose(),
+                x, y, x + width, y + height,
+                -thick * uPerUnit, uMax + thick * uPerUnit,
+                -thick * vPerUnit, vMax + thick * vPerUnit,
+                color, rad, thick));
+    }
 
-        // For larger radii, use proper circle math with better boundary handling
-        double outerRad = radius + 0.5;
-        double innerRad = Math.max(0, radius - thickness + 0.5);
-
-        for (int dx = -radius; dx <= radius; dx++) {
-            for (int dy = -radius; dy <= radius; dy++) {
-                // Calculate distance from center using the center of the pixel
-                double dist = Math.sqrt((dx + 0.5) * (dx + 0.5) + (dy + 0.5) * (dy + 0.5));
-
-                // Check if point is within the border ring
-                if (dist >= innerRad && dist <= outerRad) {
-                    // Check if point is in the correct quadrant
-                    boolean inQuadrant = false;
-                    switch (quadrant) {
-                        case 0: // bottom-right
-                            inQuadrant = dx >= 0 && dy >= 0;
-                            break;
-                        case 1: // top-right
-                            inQuadrant = dx >= 0 && dy <= 0;
-                            break;
-                        case 2: // top-left
-                            inQuadrant = dx <= 0 && dy <= 0;
-                            break;
-                        case 3: // bottom-left
-                            inQuadrant = dx <= 0 && dy >= 0;
-                            break;
-                    }
-                    if (inQuadrant) {
-                        gui.fill(cx + dx, cy + dy, cx + dx + 1, cy + dy + 1, color);
-                    }
-                }
-            }
+    // Browsers queued below this one are submitted before it draws anything on its own
+    private void flushCompositor(GuiGraphics gui) {
+        if (this.compositor != null) {
+            this.compositor.flush(gui);
+        }
+    }
+
+    private void drawThumbnail(GuiGraphics gui, int x, int y, int width, int height, int thickness) {
+        flushCompositor(gui);
+        int left = x + thickness;
+        int top = y + thickness;
+        int right = x + width - thickness;
+        int bottom = y + height - thickness;
+        if (Minecraft.getInstance().screen instanceof BrowserScreen) {
+            left = BrowserScreen.BROWSER_DRAW_LEFT;
+            top = BrowserScreen.BROWSER_DRAW_TOP;
+            right = Minecraft.getInstance().getWindow().getGuiScaledWidth() - BrowserScreen.BROWSER_DRAW_RIGHT;
+            bottom = Minecraft.getInstance().getWindow().getGuiScaledHeight() - BrowserScreen.BROWSER_DRAW_BOTTOM;
+        } else {
+            drawBorder(gui, x, y, width, height, backgroundColor, thickness);
         }
+        gui.blit(RenderPipelines.GUI_TEXTURED, thumbnailLocation, left, top, 0, 0, right - left, bottom - top,
+                discarded.thumbnailWidth(), discarded.thumbnailHeight(),
+                discarded.thumbnailWidth(), discarded.thumbnailHeight());
+    }
+
+    private void drawBorder(GuiGraphics gui, int x, int y, int width, int height, int color, int thickness) {
+        flushCompositor(gui);
+        int thick = Math.max(1, thickness);
+        int right = x + width;
+        int bottom = y + height;
+        gui.fill(x, y, right, y + thick, color);
+        gui.fill(x, bottom - thick, right, bottom, color);
+        gui.fill(x, y + thick, x + thick, bottom - thick, color);
+        gui.fill(right - thick, y + thick, right, bottom - thick, color);
+    }
+
+    // Map GUI coordinates inside the widget to CEF view coordinates (the view can be larger than the widget)
+    private int toBrowserX(double mouseX) {
+        int innerWidth = Math.max(1, this.widgetWidth - BORDER_THICKNESS * 2);
+        int viewWidth = resizeController != null && resizeController.getAppliedWidth() > 0 ? resizeController.getAppliedWidth() : innerWidth;
+        return (int) ((mouseX - this.getLeftSide() - BORDER_THICKNESS) * viewWidth / innerWidth);
+    }
+
+    private int toBrowserY(double mouseY) {
+        int innerHeight = Math.max(1, this.widgetHeight - BORDER_THICKNESS * 2);
+        int viewHeight = resizeController != null && resizeController.getAppliedHeight() > 0 ? resizeController.getAppliedHeight() : innerHeight;
+        return (int) ((mouseY - this.getTop() - BORDER_THICKNESS) * viewHeight / innerHeight);
     }
 
     public boolean mouseClicked(double mouseX, double mouseY, int button) {
         if (browser != null && initialized) {
             if (mouseX >= this.getLeftSide() && mouseX <= this.getLeftSide() + this.widgetWidth && mouseY >= this.getTop() && mouseY <= this.getTop() + this.widgetHeight) {
-                int browserX = (int)(mouseX - this.getLeftSide());
-                int browserY = (int)(mouseY - this.getTop());
+                int browserX = toBrowserX(mouseX);
+                int browserY = toBrowserY(mouseY);
 
-                browser.sendMousePress(browserX, browserY, button);
-                browser.sendMouseRelease(browserX, browserY, button);
+                browser.getInputQueue().mousePress(browserX, browserY, button);
+                browser.getInputQueue().mouseRelease(browserX, browserY, button);
                 return true;
             }
         }
@@ -327,9 +462,9 @@ public class BrowserWidget extends Widget {
     public void mouseMoved(double mouseX, double mouseY) {
         if (browser != null && initialized) {
             if (mouseX >= this.getLeftSide() && mouseX <= this.getLeftSide() + this.widgetWidth && mouseY >= this.getTop() && mouseY <= this.getTop() + this.widgetHeight) {
-                int browserX = (int)(mouseX - this.getLeftSide());
-                int browserY = (int)(mouseY - this.getTop());
-                browser.sendMouseMove(browserX, browserY);
+                int browserX = toBrowserX(mouseX);
+                int browserY = toBrowserY(mouseY);
+                browser.getInputQueue().mouseMove(browserX, browserY);
             }
         }
     }
@@ -337,9 +472,9 @@ public class BrowserWidget extends Widget {
     public boolean mouseScrolled(double mouseX, double mouseY, double delta) {
         if (browser != null && initialized) {
             if (mouseX >= this.getLeftSide() && mouseX <= this.getLeftSide() + this.widgetWidth && mouseY >= this.getTop() && mouseY <= this.getTop() + this.widgetHeight) {
-                int browserX = (int)(mouseX - this.getLeftSide());
-                int browserY = (int)(mouseY - this.getTop());
-                browser.sendMouseWheel(browserX, browserY, delta, 0);
+                int browserX = toBrowserX(mouseX);
+                int browserY = toBrowserY(mouseY);
+                browser.getInputQueue().mouseWheel(browserX, browserY, delta, 0);
                 return true;
             }
         }
@@ -348,7 +483,12 @@ public class BrowserWidget extends Widget {
 
     public boolean keyPressed(int keyCode, int scanCode, int modifiers) {
         if (browser != null && initialized) {
-            browser.sendKeyPress(keyCode, scanCode, modifiers);
+            if (BrowserInputQueue.isPasteShortcut(keyCode, modifiers)) {
+                browser.getInputQueue().paste(Minecraft.getInstance().keyboardHandler.getClipboard(),
+                        keyCode, scanCode, modifiers);
+                return true;
+            }
+            browser.getInputQueue().keyPress(keyCode, scanCode, modifiers);
             return true;
         }
         return false;
@@ -356,7 +496,7 @@ public class BrowserWidget extends Widget {
 
     public boolean keyReleased(int keyCode, int scanCode, int modifiers) {
         if (browser != null && initialized) {
-            browser.sendKeyRelease(keyCode, scanCode, modifiers);
+            browser.getInputQueue().keyRelease(keyCode, scanCode, modifiers);
             return true;
         }
         return false;
@@ -364,7 +504,7 @@ public class BrowserWidget extends Widget {
 
     public boolean charTyped(char chr, int modifiers) {
         if (browser != null && initialized) {
-            browser.sendKeyTyped(chr, modifiers);
+            browser.getInputQueue().charTyped(chr, modifiers);
             return true;
         }
         return false;
@@ -374,14 +514,71 @@ public class BrowserWidget extends Widget {
         return initialized && browser != null;
     }
 
+    /**
+     * Close the browser to free its renderer process, keeping its URL, title, scroll position
+     * and a thumbnail so {@link #restore()} can bring it back.
+     * @param fallbackTitle title to keep if the page never reported one
+     */
+    public void discard(String fallbackTitle) {
+        if (browser == null) {
+            return;
+        }
+        DiscardedBrowser snapshot = browser.snapshot(fallbackTitle);
+        cleanup();
+        this.discarded = snapshot;
+        if (snapshot.thumbnail() != null) {
+            NativeImage image = new NativeImage(snapshot.thumbnailWidth(), snapshot.thumbnailHeight(), false);
+            for (int y = 0; y < snapshot.thumbnailHeight(); y++) {
+                for (int x = 0; x < snapshot.thumbnailWidth(); x++) {
+                    image.setPixel(x, y, snapshot.thumbnail()[y * snapshot.thumbnailWidth() + x]);
+                }
+            }
+            thumbnailLocation = ResourceLocation.fromNamespaceAndPath(PIPBrowser.MODID, "thumbnail/" + nextThumbnailId++);
+            thumbnailTexture = new DynamicTexture(thumbnailLocation::toString, image);
+            Minecraft.getInstance().getTextureManager().register(thumbnailLocation, thumbnailTexture);
+        }
+        PIPBrowser.LOGGER.info("Discarded browser tab {}", snapshot.url());
+    }
+
+    /**
+     * Rebuild a discarded browser at its last URL and scroll position. The thumbnail is shown until it paints.
+     */
+    public void restore() {
+        if (discarded == null || browser != null || pendingBrowser != null) {
+            return;
+        }
+        this.initialUrl = discarded.url();
+        initializeBrowser();
+    }
+
+    public boolean isDiscarded() {
+        return browser == null && pendingBrowser == null && discarded != null;
+    }
+
+    public DiscardedBrowser getDiscarded() {
+        return discarded;
+    }
+
+    private void releaseThumbnail() {
+        if (thumbnailLocation != null) {
+            Minecraft.getInstance().getTextureManager().release(thumbnailLocation);
+        }
+        thumbnailTexture = null;
+        thumbnailLocation = null;
+        discarded = null;
+    }
+
     public void cleanup() {
+        releaseThumbnail();
+        if (pendingBrowser != null) {
+            pendingBrowser.cancel();
+            pendingBrowser = null;
+        }
         if (browser != null) {
-            try {
-                browser.close();
-            } catch (Exception e) {
-                System.err.println("Error closing browser: " + e.getMessage());
-            }
+            // Closed by the manager on a later tick
+            BrowserManager.close(browser);
             browser = null;
+            resizeController = null;
         }
         initialized = false;
     }
@@ -389,11 +586,93 @@ public class BrowserWidget extends Widget {
     public void setSize(int width, int height) {
         this.width = width;
         this.height = height;
-        if (browser != null) {
-            browser.resize(width, height);
+        resizeBrowser(width, height);
+    }
+
+    /**
+     * Resize the browser to an exact pixel size (skipped if it already has that size).
+     */
+    public void resizeBrowser(int width, int height) {
+        if (resizeController != null) {
+            resizeController.requestExact(width, height);
         }
     }
 
+    /**
+     * Called when the user starts dragging the widget size; the browser keeps its
+     * current resolution and the texture is stretched until the drag ends.
+     */
+    public void beginInteractiveResize() {
+        if (resizeController != null) {
+            resizeController.beginDrag();
+        }
+    }
+
+    public void endInteractiveResize() {
+        if (resizeController != null) {
+            resizeController.endDrag();
+        }
+    }
+
+    /**
+     * Tell the widget where its browser is shown so CEF paints at that surface's rate.
+     */
+    public void setSurface(BrowserSurface surface) {
+        this.surface = surface;
+        applySurfaceState();
+    }
+
+    public BrowserSurface getSurface() {
+        return surface;
+    }
+
+    @Override
+    public void setVisible(boolean visible) {
+        super.setVisible(visible);
+        applySurfaceState();
+    }
+
+    // A minimised HUD browser keeps running (e.g. music) but nobody looks at it
+    private BrowserSurface getEffectiveSurface() {
+        return surface == BrowserSurface.HUD && !isVisible() ? BrowserSurface.BACKGROUND : surface;
+    }
+
+    // Frame rate and upload budget: the configured cap of the surface the browser is shown on
+    private void applyPaintBudget() {
+        if (browser == null) {
+            return;
+        }
+        BrowserSurface effective = getEffectiveSurface();
+        int frameRate = effective.getDefaultFrameRate();
+        try {
+            frameRate = Integer.parseInt(config.getProperty(effective.getConfigKey(), String.valueOf(frameRate)).trim());
+        } catch (NumberFormatException e) {
+            PIPBrowser.LOGGER.warn("Invalid {} in browser config: {}", effective.getConfigKey(), e.getMessage());
+        }
+        long uploadBudget = 4096L * 1024L;
+        try {
+            uploadBudget = Long.parseLong(config.getProperty("uploadBudget", "4096").trim()) * 1024L;
+        } catch (NumberFormatException e) {
+            PIPBrowser.LOGGER.warn("Invalid uploadBudget in browser config: {}", e.getMessage());
+        }
+        browser.setFrameRate(frameRate);
+        browser.setUploadMode(Boolean.parseBoolean(config.getProperty("pixelBufferUploads", "true")), uploadBudget);
+    }
+
+    private void applySurfaceState() {
+        if (browser == null) {
+            return;
+        }
+        applyPaintBudget();
+        BrowserSurface effective = getEffectiveSurface();
+
+        // Background tabs are suspended, except the HUD's browser which may be minimised while playing music
+        PIPBrowser mod = PIPBrowser.getInstance();
+        boolean isHudBrowser = mod != null && mod.mainHud != null && mod.mainHud.getBrowserWidget() == this;
+        boolean suspend = effective == BrowserSurface.BACKGROUND && !isHudBrowser && Config.shouldSuspendBackgroundTabs();
+        browser.setSuspendRequested(suspend, !Config.shouldSuspendPlayingTabs());
+    }
+
     public float getOpacity() {
         return opacity;
     }
@@ -429,13 +708,7 @@ public class BrowserWidget extends Widget {
 
     public void pauseAllMedia() {
         if (browser != null && initialized) {
-            String pauseScript =
-                    "var videos = document.querySelectorAll('video'); " +
-                            "for(var i = 0; i < videos.length; i++) { videos[i].pause(); } " +
-                            "var audios = document.querySelectorAll('audio'); " +
-                            "for(var i = 0; i < audios.length; i++) { audios[i].pause(); }";
-
-            browser.executeJavaScript(pauseScript, "", 0);
+            browser.executeJavaScript(PAUSE_MEDIA_SCRIPT, "", 0);
         }
     }
 }
@@ -1,13 +1,15 @@
 package com.zylr.pipbrowser.widgets;
 
+import com.mojang.blaze3d.platform.Window;
 import com.zylr.pipbrowser.PIPBrowser;
+import com.zylr.pipbrowser.properties.ConfigFile;
+import com.zylr.pipbrowser.properties.ConfigStore;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.gui.components.Button;
 import net.minecraft.resources.ResourceLocation;
 import org.slf4j.Logger;
 
-import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
@@ -18,6 +20,8 @@ public class Widget implements IWidget {
     private static final Logger LOGGER = PIPBrowser.LOGGER;
 
     public Properties config = null;
+    // Version of the shared config file this widget's copy was taken from
+    private int configVersion = -1;
     protected IWidget parent;
     protected List<IWidget> children = new ArrayList<>();
     public int backgroundColor;
@@ -39,10 +43,13 @@ public class Widget implements IWidget {
 
     protected WidgetType type;
     protected boolean visible;
-    boolean isBottomHalf;
-    boolean isTopHalf;
-    boolean isLeftSide;
-    boolean isRightSide;
+
+    // Anchors and size are a snapshot, recomputed only when marked dirty or when the GUI size changes
+    private boolean layoutDirty = true;
+    private int layoutGuiWidth = -1;
+    private int layoutGuiHeight = -1;
+    // Bumped on every geometry change of any widget, lets hit-test caches know they are stale
+    private static int layoutVersion = 0;
 
     List<Button> buttons;
 
@@ -54,67 +61,103 @@ public class Widget implements IWidget {
         buttons = new ArrayList<>();
     }
 
-    // Config File
+    // Config File, parsed once per widget type and copied from memory for each widget
     public void setupConfig() {
-        File configFile = this.getType().getFile();
-        Properties chatConfig = new Properties();
-        try {
-            if (!configFile.exists()) {
-                LOGGER.info("making file");
-                configFile.createNewFile();
-                // Load defaults for config files
-                InputStream chatConfigInput = this.getClass().getClassLoader().getResourceAsStream(this.getType().getDefaultFile());
-                chatConfig.load(chatConfigInput);
-                // Save default config files
-                OutputStream chatConfigOutput = new FileOutputStream(this.getType().getFile().getPath());
-                chatConfig.store(chatConfigOutput, null);
-            }
-            InputStream input = new FileInputStream(this.getType().getFile().getPath());
-            this.config = new Properties();
-            // Load config
-            this.config.load(input);
-        }catch(IOException ex) {
-            ex.printStackTrace();
-        }
+        ConfigFile file = ConfigStore.widget(this.getType());
+        this.configVersion = file.getVersion();
+        this.config = file.copy();
+        this.invalidateLayout();
     }
 
     public void resetConfig() {
-        try {
-            File configFile = this.getType().getFile();
-
-            // Delete the existing config file if it exists
-            if (configFile.exists()) {
-                if (!configFile.delete()) {
-                    LOGGER.error("Failed to delete config file: " + configFile.getPath());
-                    return;
-                }
-            }
-
-            // Regenerate the config with defaults
-            setupConfig();
+        ConfigFile file = ConfigStore.widget(this.getType());
+        file.reset();
+        setupConfig();
+        LOGGER.info("Config file reset to defaults: " + file.getPath());
+    }
 
-            LOGGER.info("Config file reset to defaults: " + configFile.getPath());
+    public void saveConfig() {
+        ConfigFile file = ConfigStore.widget(this.getType());
+        file.save(this.config);
+        this.configVersion = file.getVersion();
+    }
 
-        } catch (Exception ex) {
-            LOGGER.error("Error resetting config file: " + ex.getMessage());
-            ex.printStackTrace();
+    /**
+     * Pick up the shared config when it was saved by another widget or edited on disk.
+     */
+    protected void refreshConfig() {
+        if (this.type == null || this.config == null) {
+            return;
+        }
+        ConfigFile file = ConfigStore.widget(this.type);
+        if (file.getVersion() != this.configVersion) {
+            setupConfig();
+            onConfigReloaded();
         }
     }
 
-    public void saveConfig() {
-        try (OutputStream output = new FileOutputStream(this.getType().getFile().getPath())) {
-            // Save the config
-            this.config.store(output, null);
-        }catch (IOException ex) {
-            ex.printStackTrace();
-        }
+    // Re-apply settings read from the config, called after refreshConfig() picked up a change
+    protected void onConfigReloaded() {
     }
 
     public Properties getConfig() {
         return this.config;
     }
 
-    public void render(GuiGraphics gui) {this.fixAnchors();}
+    public void render(GuiGraphics gui) {this.updateLayout();}
+
+    /**
+     * Mark the layout snapshot as stale, e.g. after a drag, a resize or loading the config.
+     */
+    public void invalidateLayout() {
+        this.layoutDirty = true;
+        layoutVersion++;
+    }
+
+    public static int getLayoutVersion() {
+        return layoutVersion;
+    }
+
+    /**
+     * Bring the layout snapshot up to date. Only does work after {@link #invalidateLayout()} or when
+     * the window size or GUI scale changed, so it is fine to call on every frame.
+     */
+    public void updateLayout() {
+        // External config edits show up on the next frame
+        this.refreshConfig();
+        Window window = mc.getWindow();
+        int guiWidth = window.getGuiScaledWidth();
+        int guiHeight = window.getGuiScaledHeight();
+        if (!this.layoutDirty && guiWidth == this.layoutGuiWidth && guiHeight == this.layoutGuiHeight) {
+            return;
+        }
+        this.layoutDirty = false;
+        this.layoutGuiWidth = guiWidth;
+        this.layoutGuiHeight = guiHeight;
+        this.layout(guiWidth, guiHeight);
+        layoutVersion++;
+    }
+
+    // Size from the percentages (when set), anchors from the relative position, then kept on screen
+    protected void layout(int guiWidth, int guiHeight) {
+        if (this.widthPercent > 0 && this.heightPercent > 0) {
+            this.widgetWidth = Math.min(guiWidth, (int) (this.widthPercent * guiWidth));
+            this.widgetHeight = Math.min(guiHeight, (int) (this.heightPercent * guiHeight));
+        }
+        int x = (int) (this.relativeAnchorx * guiWidth);
+        int y = (int) (this.relativeAnchorY * guiHeight);
+        int clampedX = Math.max(0, Math.min(x, guiWidth - this.widgetWidth));
+        int clampedY = Math.max(0, Math.min(y, guiHeight - this.widgetHeight));
+        // Only a clamp moves the stored position, so rounding never makes a widget drift
+        if (clampedX != x) {
+            this.relativeAnchorx = (double) clampedX / guiWidth;
+        }
+        if (clampedY != y) {
+            this.relativeAnchorY = (double) clampedY / guiHeight;
+        }
+        this.anchorX = clampedX;
+        this.anchorY = clampedY;
+    }
 
     public void renderChildren() {
 
@@ -148,33 +191,24 @@ public class Widget implements IWidget {
     }
 
     public boolean isTopHalf() {
-        this.isTopHalf = this.anchorY < mc.getWindow().getGuiScaledHeight() / 2;
-        return false;
+        return this.anchorY < mc.getWindow().getGuiScaledHeight() / 2;
     }
 
     public boolean isBottomHalf() {
-        this.isBottomHalf = this.anchorY > mc.getWindow().getGuiScaledHeight() / 2;
-        return false;
+        return this.anchorY > mc.getWindow().getGuiScaledHeight() / 2;
     }
 
     public boolean isLeftSide() {
-        this.isLeftSide = this.anchorX + this.widgetWidth/2 < mc.getWindow().getGuiScaledWidth() / 2;
-        return this.isLeftSide;
+        return this.anchorX + this.widgetWidth/2 < mc.getWindow().getGuiScaledWidth() / 2;
     }
     public boolean isRightSide() {
-        this.isRightSide = this.anchorX + this.widgetWidth/2 > mc.getWindow().getGuiScaledWidth() / 2;
-        return this.isRightSide;
+        return this.anchorX + this.widgetWidth/2 > mc.getWindow().getGuiScaledWidth() / 2;
     }
 
+    // Keep the widget on screen right away instead of on the next layout pass
     public void fixAnchors() {
-        if (getRightSide() > (mc.getWindow().getGuiScaledWidth()))
-            this.setRelativeX((int)((mc.getWindow().getGuiScaledWidth())) - this.widgetWidth);
-        if (getLeftSide() < 0)
-            this.setRelativeX(0);
-        if (getBottom() > (mc.getWindow().getGuiScaledHeight()))
-            this.setRelativeY((int)(mc.getWindow().getGuiScaledHeight()) - this.widgetHeight);
-        if (getTop() < 0)
-            this.setRelativeY(0);
+        this.invalidateLayout();
+        this.updateLayout();
     }
 
     public boolean isHovered() {
@@ -186,31 +220,36 @@ public class Widget implements IWidget {
 
     public void setWidgetWidth(int width) {
         this.widgetWidth = width;
+        this.invalidateLayout();
     }
     public void setWidgetHeight(int height) {
         this.widgetHeight = height;
+        this.invalidateLayout();
     }
 
     public double setRelativeX(int anchorX) {
-
         this.relativeAnchorx = (double)anchorX / mc.getWindow().getGuiScaledWidth();
-        this.getAnchorXFromRelative(this.relativeAnchorx);
+        this.anchorX = anchorX;
+        this.invalidateLayout();
         return this.relativeAnchorx;
     }
     public double setRelativeY(int anchorY) {
         this.relativeAnchorY = (double)anchorY / mc.getWindow().getGuiScaledHeight();
-        this.getAnchorYFromRelative(this.relativeAnchorY);
+        this.anchorY = anchorY;
+        this.invalidateLayout();
         return this.relativeAnchorY;
     }
-    public int getAnchorXFromRelative(double relativeAnchorX) {
+    public void setRelativeAnchor(double relativeAnchorX, double relativeAnchorY) {
         this.relativeAnchorx = relativeAnchorX;
-        this.anchorX = (int) (this.relativeAnchorx * mc.getWindow().getGuiScaledWidth());
-        return this.anchorX;
+        this.relativeAnchorY = relativeAnchorY;
+        this.invalidateLayout();
+    }
+    // Pure conversions, they do not move the widget
+    public int getAnchorXFromRelative(double relativeAnchorX) {
+        return (int) (relativeAnchorX * mc.getWindow().getGuiScaledWidth());
     }
     public int getAnchorYFromRelative(double relativeAnchorY) {
-        this.relativeAnchorY = relativeAnchorY;
-        this.anchorY = (int) (this.relativeAnchorY * mc.getWindow().getGuiScaledHeight());
-        return this.anchorY;
+        return (int) (relativeAnchorY * mc.getWindow().getGuiScaledHeight());
     }
 
     public int getAnchorX() {
@@ -275,6 +314,7 @@ public class Widget implements IWidget {
 
     public void setWidthPercent(double widthPercent) {
         this.widthPercent = widthPercent;
+        this.invalidateLayout();
     }
 
     public double getHeightPercent() {
@@ -283,5 +323,6 @@ public class Widget implements IWidget {
 
     public void setHeightPercent(double heightPercent) {
         this.heightPercent = heightPercent;
+        this.invalidateLayout();
     }
 }